@@ -9,12 +9,52 @@ repositories {
     mavenCentral()
 }
 
+val jmh by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+val load by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+sourceSets.test {
+    compileClasspath += load.output
+    runtimeClasspath += load.output
+}
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Запускает JMH-бенчмарки (со сбором аллокаций: -prof gc) и пишет результаты в JSON"
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.absolutePath)
+    (project.findProperty("jmhIncludes") as String?)?.let { args(it) }
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "benchmark"
+    description = "Нагружает локальный сервер тысячами клиентов и сравнивает режимы выполнения"
+    classpath = load.runtimeClasspath
+    mainClass.set("ru.netology.LoadGenerator")
+    jvmArgs("-Dfile.encoding=UTF-8")
+    (project.findProperty("loadArgs") as String?)?.let { args(it.split(" ").filter(String::isNotBlank)) }
+}
@@ -0,0 +1,99 @@
+package ru.netology;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int clients;
+
+    @Param({"text", "mixed", "deflate"})
+    public String formats;
+
+    @Param({"64", "2048"})
+    public int size;
+
+    private Path directory;
+    private ChatServer server;
+    private Message message;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("broadcast-benchmark");
+        Properties properties = new Properties();
+        properties.setProperty("log.file", directory.resolve("file.log").toString());
+        properties.setProperty("log.overflow", "drop");
+        server = new ChatServer(0, new Settings(properties));
+        for (int i = 0; i < clients; i++) {
+            server.addClient(new SinkClient(server, format(i)));
+        }
+        String text = "Всем привет, как дела? Встречаемся в 19:00. ".repeat(size / 40 + 1);
+        message = new Message(Message.MessageType.MESSAGE, "Алиса", text.substring(0, size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Message.Format format(int client) {
+        if ("deflate".equals(formats)) {
+            return Message.Format.DEFLATE;
+        }
+        return "mixed".equals(formats) && client % 2 == 1 ? Message.Format.BINARY : Message.Format.TEXT;
+    }
+
+    @Benchmark
+    public void broadcast() {
+        server.broadcast(message);
+    }
+
+    private static final class SinkClient extends ClientHandler {
+        private SinkClient(ChatServer server, Message.Format format) {
+            super(server);
+            negotiated(format);
+        }
+
+        @Override
+        protected void outboundReady() {
+            while (pollOutbound() != null) {
+            }
+        }
+
+        @Override
+        protected void closeConnection() {
+        }
+    }
+}
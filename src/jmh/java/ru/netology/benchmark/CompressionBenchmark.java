@@ -0,0 +1,92 @@
+package ru.netology.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+    private static final String[] WORDS = {
+            "привет", "как", "дела", "встречаемся", "в", "19:00", "у", "входа", "кто", "идёт",
+            "сегодня", "завтра", "отчёт", "готов", "смотри", "ссылку", "https://example.org/chat", "ок", "спасибо"
+    };
+
+    @Param({"64", "512", "4096", "32768"})
+    public int size;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    @Param({"chat", "random"})
+    public String content;
+
+    private ByteBuffer frame;
+    private byte[] deflated;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(size);
+        while (text.length() < size) {
+            if ("chat".equals(content)) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            } else {
+                text.append((char) ('а' + random.nextInt(32)));
+            }
+        }
+        text.setLength(size);
+        frame = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "Алиса", text.toString()));
+        ByteBuffer compressed = BinaryCodec.deflate(frame, level);
+        deflated = new byte[compressed.remaining()];
+        compressed.duplicate().get(deflated);
+    }
+
+    @Benchmark
+    public ByteBuffer deflate(Bytes bytes) {
+        ByteBuffer compressed = BinaryCodec.deflate(frame, level);
+        bytes.rawBytes += frame.remaining();
+        bytes.wireBytes += compressed.remaining();
+        return compressed;
+    }
+
+    @Benchmark
+    public Message inflate() throws IOException {
+        return BinaryCodec.read(new ByteArrayInputStream(deflated));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long rawBytes;
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rawBytes = 0;
+            wireBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.netology.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.netology.common.Logger;
+import ru.netology.common.Settings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+
+    @Param({"true", "false"})
+    public String async;
+
+    private Path directory;
+    private Logger logger;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("logger-benchmark");
+        Properties properties = new Properties();
+        properties.setProperty("log.file", directory.resolve("file.log").toString());
+        properties.setProperty("log.async", async);
+        logger = new Logger(new Settings(properties));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        logger.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void log1Thread() {
+        logger.log("Алиса", "Всем привет, как дела? Встречаемся в 19:00");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void log4Threads() {
+        logger.log("Алиса", "Всем привет, как дела? Встречаемся в 19:00");
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void log16Threads() {
+        logger.log("Алиса", "Всем привет, как дела? Встречаемся в 19:00");
+    }
+}
@@ -0,0 +1,98 @@
+package ru.netology.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.netology.common.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"valid", "malformed"})
+    public String input;
+
+    private String line;
+    private byte[] bytes;
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        line = "valid".equals(input)
+                ? "MESSAGE:Алиса:Всем привет, как дела? Встречаемся в 19:00"
+                : "MESAGE:Алиса:Всем привет, как дела? Встречаемся в 19:00";
+        bytes = line.getBytes(StandardCharsets.UTF_8);
+        message = new Message(Message.MessageType.MESSAGE, "Алиса", "Всем привет, как дела? Встречаемся в 19:00");
+    }
+
+    @Benchmark
+    public String serialize() {
+        return message.serialize();
+    }
+
+    @Benchmark
+    public ByteBuffer toTextFrame() {
+        return message.toFrame(Message.Format.TEXT);
+    }
+
+    @Benchmark
+    public ByteBuffer toBinaryFrame() {
+        return message.toFrame(Message.Format.BINARY);
+    }
+
+    @Benchmark
+    public Message deserializeLegacy() {
+        return legacyDeserialize(line);
+    }
+
+    @Benchmark
+    public Message deserialize() {
+        return Message.deserialize(line);
+    }
+
+    @Benchmark
+    public Message parseBytes() {
+        return Message.parse(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public Message decodeAndDeserializeLegacy() {
+        return legacyDeserialize(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static Message legacyDeserialize(String line) {
+        if (line == null || line.trim().isEmpty()) {
+            return null;
+        }
+
+        String[] parts = line.split(":", 3);
+        if (parts.length < 2) {
+            return null;
+        }
+
+        try {
+            Message.MessageType type = Message.MessageType.valueOf(parts[0]);
+            String username = parts[1];
+            String content = parts.length > 2 ? parts[2] : "";
+            return new Message(type, username, content);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.netology.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.netology.common.Message;
+import ru.netology.common.SearchIndex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SearchBenchmark {
+    private static final String[] COMMON = {"привет", "как", "дела", "сегодня", "завтра", "отчёт", "готов", "ок"};
+    private static final int RARE_WORDS = 20000;
+    private static final int USERS = 1000;
+
+    @Param({"100000", "1000000"})
+    public int messages;
+
+    @Param({"common", "rare", "common+rare", "user+common"})
+    public String query;
+
+    private SearchIndex index;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new SearchIndex();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < messages; i++) {
+            content.setLength(0);
+            for (int w = 0; w < 6; w++) {
+                content.append(random.nextInt(3) == 0
+                        ? "слово" + random.nextInt(RARE_WORDS)
+                        : COMMON[random.nextInt(COMMON.length)]).append(' ');
+            }
+            index.add(i, new Message(Message.MessageType.MESSAGE, "user" + random.nextInt(USERS), content.toString()));
+        }
+        switch (query) {
+            case "common":
+                text = "отчёт";
+                break;
+            case "rare":
+                text = "слово777";
+                break;
+            case "common+rare":
+                text = "отчёт слово777";
+                break;
+            default:
+                text = "@user42 готов";
+        }
+    }
+
+    @Benchmark
+    public long[] search() {
+        return index.search(text, 20);
+    }
+}
@@ -0,0 +1,569 @@
+package ru.netology;
+
+import ru.netology.common.LatencyHistogram;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    private static final String HOST = "127.0.0.1";
+    private static final byte[] MESSAGE_PREFIX = "MESSAGE:".getBytes(StandardCharsets.US_ASCII);
+    private static final int GENERATOR_THREADS = 2;
+
+    private final Properties options;
+    private final int port;
+    private final int clientCount;
+    private final int senderCount;
+    private final int rate;
+    private final long warmupMillis;
+    private final long durationMillis;
+    private final int padding;
+    private final int stormThreads;
+
+    public LoadGenerator(Properties options) {
+        this.options = options;
+        this.port = intOption("port", 9090);
+        this.clientCount = intOption("clients", 1000);
+        this.senderCount = Math.min(clientCount, intOption("senders", 10));
+        this.rate = intOption("rate", 20);
+        this.warmupMillis = intOption("warmup.millis", 2000);
+        this.durationMillis = intOption("duration.millis", 10000);
+        this.padding = intOption("size", 64);
+        this.stormThreads = Math.max(1, intOption("storm.threads", 8));
+    }
+
+    public static final class Result {
+        private final Settings.ServerMode mode;
+        private final LatencyHistogram connectLatency;
+        private final LatencyHistogram deliveryLatency;
+        private final long sent;
+        private final long expected;
+        private final long received;
+        private final long threads;
+        private final long heapBytes;
+
+        private Result(Settings.ServerMode mode, LatencyHistogram connectLatency, LatencyHistogram deliveryLatency,
+                       long sent, long expected, long received, long threads, long heapBytes) {
+            this.mode = mode;
+            this.connectLatency = connectLatency;
+            this.deliveryLatency = deliveryLatency;
+            this.sent = sent;
+            this.expected = expected;
+            this.received = received;
+            this.threads = threads;
+            this.heapBytes = heapBytes;
+        }
+
+        public Settings.ServerMode getMode() {
+            return mode;
+        }
+
+        public LatencyHistogram getConnectLatency() {
+            return connectLatency;
+        }
+
+        public LatencyHistogram getDeliveryLatency() {
+            return deliveryLatency;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getExpected() {
+            return expected;
+        }
+
+        public long getReceived() {
+            return received;
+        }
+
+        public long getThreads() {
+            return threads;
+        }
+
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+    }
+
+    public static final class StormResult {
+        private final Settings.ServerMode mode;
+        private final int acceptors;
+        private final LatencyHistogram connectLatency;
+        private final long accepted;
+        private final long failed;
+        private final long elapsedNanos;
+
+        private StormResult(Settings.ServerMode mode, int acceptors, LatencyHistogram connectLatency,
+                            long accepted, long failed, long elapsedNanos) {
+            this.mode = mode;
+            this.acceptors = acceptors;
+            this.connectLatency = connectLatency;
+            this.accepted = accepted;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Settings.ServerMode getMode() {
+            return mode;
+        }
+
+        public int getAcceptors() {
+            return acceptors;
+        }
+
+        public LatencyHistogram getConnectLatency() {
+            return connectLatency;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getAcceptedPerSecond() {
+            return elapsedNanos > 0 ? accepted * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+        }
+    }
+
+    public Result run(Settings.ServerMode mode) throws IOException, InterruptedException {
+        Properties serverOptions = new Properties();
+        serverOptions.putAll(options);
+        serverOptions.setProperty("mode", mode.name());
+        ChatServer server = new ChatServer(port, new Settings(serverOptions));
+
+        long threadsBefore = threadCount();
+        long heapBefore = usedHeap();
+        Thread serverThread = new Thread(server::start, "load-server");
+        serverThread.start();
+        awaitListening();
+
+        LatencyHistogram connectLatency = new LatencyHistogram(HIGHEST_LATENCY);
+        LatencyHistogram deliveryLatency = new LatencyHistogram(HIGHEST_LATENCY);
+        Receiver receiver = new Receiver(deliveryLatency);
+        Thread receiverThread = new Thread(receiver, "load-receiver");
+        receiverThread.start();
+
+        List<SocketChannel> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                long start = System.nanoTime();
+                SocketChannel channel = connect("load-" + i);
+                connectLatency.record(System.nanoTime() - start);
+                channels.add(channel);
+                receiver.register(channel);
+            }
+
+            long threads = threadCount() - threadsBefore - GENERATOR_THREADS;
+            long heapBytes = usedHeap() - heapBefore;
+
+            long startNanos = System.nanoTime();
+            receiver.start(startNanos, TimeUnit.MILLISECONDS.toNanos(warmupMillis));
+            long sent = send(channels, startNanos, TimeUnit.MILLISECONDS.toNanos(warmupMillis + durationMillis));
+            long expected = sent * clientCount;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (receiver.received.get() < expected && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+
+            return new Result(mode, connectLatency, deliveryLatency, sent, expected,
+                    receiver.received.get(), threads, heapBytes);
+        } finally {
+            receiver.stop();
+            receiverThread.join();
+            for (SocketChannel channel : channels) {
+                close(channel);
+            }
+            server.stop();
+            serverThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public StormResult storm(Settings.ServerMode mode, int acceptors) throws InterruptedException {
+        Properties serverOptions = new Properties();
+        serverOptions.putAll(options);
+        serverOptions.setProperty("mode", mode.name());
+        serverOptions.setProperty("accept.threads", String.valueOf(acceptors));
+        ChatServer server = new ChatServer(port, new Settings(serverOptions));
+        Thread serverThread = new Thread(server::start, "load-server");
+        serverThread.start();
+        awaitListening();
+
+        LatencyHistogram connectLatency = new LatencyHistogram(HIGHEST_LATENCY);
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long startNanos = System.nanoTime();
+        long measureFrom = startNanos + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long deadline = measureFrom + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        Thread[] connectors = new Thread[stormThreads];
+        try {
+            for (int i = 0; i < connectors.length; i++) {
+                int connector = i;
+                connectors[i] = new Thread(() -> reconnect(connector, measureFrom, deadline,
+                        connectLatency, accepted, failed), "load-storm-" + i);
+                connectors[i].start();
+            }
+            for (Thread connector : connectors) {
+                connector.join();
+            }
+            return new StormResult(mode, acceptors, connectLatency, accepted.get(), failed.get(),
+                    deadline - measureFrom);
+        } finally {
+            server.stop();
+            serverThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void reconnect(int connector, long measureFrom, long deadline, LatencyHistogram latency,
+                           AtomicLong accepted, AtomicLong failed) {
+        long attempt = 0;
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            SocketChannel channel = null;
+            try {
+                channel = connect("storm-" + connector + "-" + attempt++);
+                if (now >= measureFrom) {
+                    latency.record(System.nanoTime() - now);
+                    accepted.incrementAndGet();
+                }
+                channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            } catch (IOException e) {
+                if (now >= measureFrom) {
+                    failed.incrementAndGet();
+                }
+            } finally {
+                if (channel != null) {
+                    close(channel);
+                }
+            }
+        }
+    }
+
+    private SocketChannel connect(String username) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, port));
+        channel.socket().setTcpNoDelay(true);
+        writeFully(channel, (new Message(Message.MessageType.JOIN, username, "").serialize() + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        byte[] ack = (username + " присоединился к чату\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        int matched = 0;
+        while (matched < ack.length) {
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Сервер закрыл соединение до подтверждения входа: " + username);
+            }
+            for (int i = 0; i < buffer.position() && matched < ack.length; i++) {
+                byte b = buffer.get(i);
+                matched = b == ack[matched] ? matched + 1 : (b == ack[0] ? 1 : 0);
+            }
+        }
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+    private long send(List<SocketChannel> channels, long startNanos, long runNanos) throws IOException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, (long) rate * senderCount);
+        String filler = "x".repeat(padding);
+        long sent = 0;
+        long scheduled = 1;
+        while (scheduled < runNanos) {
+            long delay = startNanos + scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            int sender = (int) (sent % senderCount);
+            String line = "MESSAGE:load-" + sender + ":" + scheduled + " " + filler + "\n";
+            writeFully(channels.get(sender), line.getBytes(StandardCharsets.UTF_8));
+            sent++;
+            scheduled += intervalNanos;
+        }
+        return sent;
+    }
+
+    private final class Receiver implements Runnable {
+        private final LatencyHistogram latency;
+        private final Selector selector;
+        private final ByteBuffer buffer;
+        private final AtomicLong received;
+        private final List<SocketChannel> pending;
+        private volatile long base;
+        private volatile long measureFrom;
+        private volatile boolean running;
+
+        private Receiver(LatencyHistogram latency) throws IOException {
+            this.latency = latency;
+            this.selector = Selector.open();
+            this.buffer = ByteBuffer.allocate(64 * 1024);
+            this.received = new AtomicLong();
+            this.pending = new ArrayList<>();
+            this.measureFrom = Long.MAX_VALUE;
+            this.running = true;
+        }
+
+        private void register(SocketChannel channel) {
+            synchronized (pending) {
+                pending.add(channel);
+            }
+            selector.wakeup();
+        }
+
+        private void start(long baseNanos, long measureFromNanos) {
+            base = baseNanos;
+            measureFrom = measureFromNanos;
+        }
+
+        private void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(100);
+                    synchronized (pending) {
+                        for (SocketChannel channel : pending) {
+                            channel.register(selector, SelectionKey.OP_READ, new LineState());
+                        }
+                        pending.clear();
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        read(key);
+                    }
+                    selector.selectedKeys().clear();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Ошибка генератора нагрузки: " + e.getMessage());
+            }
+        }
+
+        private void read(SelectionKey key) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            LineState state = (LineState) key.attachment();
+            buffer.clear();
+            int read;
+            try {
+                read = channel.read(buffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read < 0) {
+                key.cancel();
+                return;
+            }
+            long now = System.nanoTime();
+            for (int i = 0; i < read; i++) {
+                state.accept(buffer.get(i), now);
+            }
+        }
+
+        private final class LineState {
+            private int position;
+            private boolean message;
+            private boolean afterName;
+            private boolean digits = true;
+            private long timestamp;
+
+            private void accept(byte b, long now) {
+                if (b == '\n') {
+                    if (message && timestamp > 0) {
+                        received.incrementAndGet();
+                        if (timestamp >= measureFrom) {
+                            latency.record(now - base - timestamp);
+                        }
+                    }
+                    position = 0;
+                    message = false;
+                    afterName = false;
+                    digits = true;
+                    timestamp = 0;
+                    return;
+                }
+                if (position < MESSAGE_PREFIX.length) {
+                    message = b == MESSAGE_PREFIX[position] && (position == 0 || message);
+                } else if (message) {
+                    if (!afterName) {
+                        afterName = b == ':';
+                    } else if (digits && b >= '0' && b <= '9') {
+                        timestamp = timestamp * 10 + (b - '0');
+                    } else {
+                        digits = false;
+                    }
+                }
+                position++;
+            }
+        }
+    }
+
+    private void awaitListening() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try {
+                SocketChannel probe = SocketChannel.open(new InetSocketAddress(HOST, port));
+                probe.close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Сервер не запустился на порту " + port);
+    }
+
+    private static void writeFully(SocketChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        while (data.hasRemaining()) {
+            if (channel.write(data) == 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static long threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private int intOption(String key, int defaultValue) {
+        String value = options.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Неверное значение " + key + ": " + value + ". Используется: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private List<Settings.ServerMode> modes() {
+        List<Settings.ServerMode> modes = new ArrayList<>();
+        for (String mode : options.getProperty("modes", "threads,nio").split(",")) {
+            if (!mode.isBlank()) {
+                modes.add(Settings.ServerMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return modes;
+    }
+
+    private List<Integer> acceptorCounts() {
+        List<Integer> counts = new ArrayList<>();
+        String defaults = "1," + Runtime.getRuntime().availableProcessors();
+        for (String count : options.getProperty("acceptors", defaults).split(",")) {
+            if (!count.isBlank() && !counts.contains(Integer.parseInt(count.trim()))) {
+                counts.add(Integer.parseInt(count.trim()));
+            }
+        }
+        return counts;
+    }
+
+    private static void print(List<Result> results) {
+        System.out.printf("%-8s %12s %12s %10s %10s %10s %10s %12s %8s %10s%n",
+                "режим", "подкл. p50", "подкл. p99", "p50", "p99", "p99.9", "max", "доставлено", "потоков", "куча, МБ");
+        for (Result result : results) {
+            LatencyHistogram connect = result.getConnectLatency();
+            LatencyHistogram delivery = result.getDeliveryLatency();
+            System.out.printf(Locale.ROOT, "%-8s %12s %12s %10s %10s %10s %10s %11.2f%% %8d %10d%n",
+                    result.getMode().name().toLowerCase(Locale.ROOT),
+                    millis(connect.getValueAtPercentile(50)),
+                    millis(connect.getValueAtPercentile(99)),
+                    millis(delivery.getValueAtPercentile(50)),
+                    millis(delivery.getValueAtPercentile(99)),
+                    millis(delivery.getValueAtPercentile(99.9)),
+                    millis(delivery.getMax()),
+                    result.getExpected() > 0 ? 100.0 * result.getReceived() / result.getExpected() : 100.0,
+                    result.getThreads(),
+                    result.getHeapBytes() / (1024 * 1024));
+        }
+        System.out.println("Задержки в мс; доставка — от запланированного времени отправки до получения каждым клиентом.");
+    }
+
+    private static void printStorm(List<StormResult> results) {
+        System.out.printf("%-8s %10s %14s %12s %12s %10s%n",
+                "режим", "приёмников", "подключ./с", "подкл. p50", "подкл. p99", "ошибок");
+        for (StormResult result : results) {
+            LatencyHistogram connect = result.getConnectLatency();
+            System.out.printf(Locale.ROOT, "%-8s %10d %14.0f %12s %12s %10d%n",
+                    result.getMode().name().toLowerCase(Locale.ROOT),
+                    result.getAcceptors(),
+                    result.getAcceptedPerSecond(),
+                    millis(connect.getValueAtPercentile(50)),
+                    millis(connect.getValueAtPercentile(99)),
+                    result.getFailed());
+        }
+        System.out.println("Подключение — от connect() до подтверждения входа в чат; соединение сразу сбрасывается.");
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties options = new Properties();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.setProperty(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+            }
+        }
+
+        LoadGenerator generator = new LoadGenerator(options);
+        if ("storm".equals(options.getProperty("scenario"))) {
+            List<StormResult> results = new ArrayList<>();
+            for (Settings.ServerMode mode : generator.modes()) {
+                for (int acceptors : generator.acceptorCounts()) {
+                    System.out.println("Шторм подключений: режим " + mode.name().toLowerCase(Locale.ROOT)
+                            + ", приёмников " + acceptors + "...");
+                    results.add(generator.storm(mode, acceptors));
+                    Thread.sleep(1000);
+                }
+            }
+            printStorm(results);
+            return;
+        }
+        List<Result> results = new ArrayList<>();
+        for (Settings.ServerMode mode : generator.modes()) {
+            System.out.println("Нагрузка на режим " + mode.name().toLowerCase(Locale.ROOT) + "...");
+            results.add(generator.run(mode));
+            Thread.sleep(1000);
+        }
+        print(results);
+    }
+}
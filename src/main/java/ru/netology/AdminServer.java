@@ -0,0 +1,84 @@
+package ru.netology;
+
+import ru.netology.common.Metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+class AdminServer implements Runnable {
+    private static final int REQUEST_TIMEOUT_MILLIS = 200;
+
+    private final int port;
+    private final Metrics metrics;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    AdminServer(int port, Metrics metrics) {
+        this.port = port;
+        this.metrics = metrics;
+    }
+
+    void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        running = true;
+        Thread thread = new Thread(this, "admin");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("Статистика доступна на 127.0.0.1:" + port);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try (Socket socket = serverSocket.accept()) {
+                respond(socket);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка порта статистики: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void respond(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+        boolean http = false;
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            String requestLine = reader.readLine();
+            http = requestLine != null && requestLine.startsWith("GET ");
+            String header;
+            while (http && (header = reader.readLine()) != null && !header.isEmpty()) {
+            }
+        } catch (SocketTimeoutException ignored) {
+        }
+
+        byte[] body = metrics.render().getBytes(StandardCharsets.UTF_8);
+        OutputStream out = socket.getOutputStream();
+        if (http) {
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: "
+                    + body.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        out.write(body);
+        out.flush();
+    }
+
+    void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии порта статистики: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.netology;
+
+import ru.netology.common.BinaryCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+class BinaryFramer implements Framer {
+    private static final int INITIAL_CAPACITY = 128;
+
+    private final HandshakeListener handshakeListener;
+    private byte[] bytes;
+    private int length;
+    private boolean handshakeReceived;
+
+    BinaryFramer() {
+        this(deflate -> {
+        });
+    }
+
+    BinaryFramer(HandshakeListener handshakeListener) {
+        this.bytes = new byte[INITIAL_CAPACITY];
+        this.handshakeListener = handshakeListener;
+    }
+
+    BinaryFramer(boolean handshakeReceived) {
+        this();
+        this.handshakeReceived = handshakeReceived;
+    }
+
+    @Override
+    public boolean feed(ByteBuffer buffer, MessageConsumer consumer) throws FramingException {
+        while (buffer.hasRemaining()) {
+            int chunk = Math.min(buffer.remaining(), ensureSpace());
+            buffer.get(bytes, length, chunk);
+            length += chunk;
+            if (!drain(consumer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean drain(MessageConsumer consumer) throws FramingException {
+        int position = 0;
+        try {
+            if (!handshakeReceived) {
+                if (length < BinaryCodec.handshakeLength()) {
+                    return true;
+                }
+                if (!BinaryCodec.isHandshake(bytes, 0)) {
+                    throw new FramingException("Некорректное рукопожатие бинарного протокола");
+                }
+                handshakeReceived = true;
+                position = BinaryCodec.handshakeLength();
+                handshakeListener.accepted(BinaryCodec.isDeflateHandshake(bytes, 0));
+            }
+
+            int frameLength;
+            while ((frameLength = BinaryCodec.frameLength(bytes, position, length - position)) > 0
+                    && length - position >= frameLength) {
+                boolean proceed = !consumer.admit(frameLength) || consumer.accept(BinaryCodec.decode(bytes, position, frameLength));
+                position += frameLength;
+                if (!proceed) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            throw new FramingException(e.getMessage());
+        } finally {
+            compact(position);
+        }
+        return true;
+    }
+
+    private void compact(int position) {
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, length - position);
+            length -= position;
+        }
+    }
+
+    private int ensureSpace() throws FramingException {
+        if (length == bytes.length) {
+            int maxLength = BinaryCodec.MAX_FRAME_LENGTH + 16;
+            if (length >= maxLength) {
+                throw new FramingException("Кадр длиннее " + BinaryCodec.MAX_FRAME_LENGTH + " байт");
+            }
+            bytes = Arrays.copyOf(bytes, Math.min(maxLength, length * 2));
+        }
+        return bytes.length - length;
+    }
+
+    interface HandshakeListener {
+        void accepted(boolean deflate);
+    }
+}
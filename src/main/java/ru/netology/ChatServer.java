@@ -2,94 +2,698 @@ package ru.netology;
 
 import ru.netology.common.Logger;
 import ru.netology.common.Message;
+import ru.netology.common.MessageStore;
+import ru.netology.common.SearchIndex;
+import ru.netology.common.Metrics;
 import ru.netology.common.Settings;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.Closeable;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 public class ChatServer {
+    private static final int HEARTBEAT_WHEEL_SLOTS = 512;
+
     private final int port;
-    private final List<ClientHandler> clients;
+    private final Settings settings;
+    private final Set<ClientHandler> clients;
+    private final RoomRegistry rooms;
+    private final ConcurrentMap<String, ClientHandler> usernames;
+    private final MessageHistory history;
     private final Logger logger;
-    private ServerSocket serverSocket;
+    private final MessageStore store;
+    private final ServerMetrics metrics;
+    private final FanoutExecutor fanout;
+    private volatile ClusterRelay cluster;
+    private final int compressionLevel;
+    private final TokenBucket admission;
+    private final TimingWheel heartbeats;
+    private volatile PresenceCoalescer presence;
+    private final SessionRegistry sessions;
+    private final SearchIndex search;
+    private AdminServer adminServer;
+    private ObjectName metricsName;
+    private final List<Closeable> listeners;
+    private boolean reusePort;
+    private EventLoop[] eventLoops;
+    private ExecutorService clientExecutor;
+    private volatile ExecutorService writerExecutor;
     private volatile boolean running;
-    private volatile boolean stopped;
+    private final AtomicBoolean stopped;
 
     public ChatServer(int port) {
+        this(port, new Settings(new Properties()));
+    }
+
+    public ChatServer(int port, Settings settings) {
         this.port = port;
-        this.clients = new CopyOnWriteArrayList<>();
-        this.logger = new Logger();
+        this.settings = settings;
+        this.clients = ConcurrentHashMap.newKeySet();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.rooms = new RoomRegistry();
+        this.usernames = new ConcurrentHashMap<>();
+        this.history = new MessageHistory(settings.getHistoryCapacity());
+        this.logger = new Logger(settings);
+        this.store = openStore(settings);
+        this.search = openSearch(settings, store);
+        this.heartbeats = settings.getHeartbeatIntervalMillis() > 0
+                ? new TimingWheel("heartbeat", settings.getHeartbeatTickMillis(), HEARTBEAT_WHEEL_SLOTS)
+                : null;
+        this.metrics = new ServerMetrics(logger);
+        this.fanout = settings.getBroadcastThreads() > 0
+                ? new FanoutExecutor(settings.getBroadcastThreads(), settings.getBroadcastQueueCapacity(), metrics)
+                : null;
+        this.compressionLevel = settings.getCompressionLevel();
+        this.admission = settings.getAcceptRate() > 0
+                ? new TokenBucket(settings.getAcceptRate(), settings.getAcceptBurst())
+                : null;
+        this.sessions = settings.isSessionResume()
+                ? new SessionRegistry(settings, store)
+                : null;
         this.running = false;
+        this.stopped = new AtomicBoolean();
+        if (heartbeats != null) {
+            heartbeats.start();
+        }
     }
 
     public void start() {
         try {
-            serverSocket = new ServerSocket(port);
-            running = true;
-            System.out.println("Сервер запущен на порту " + port);
-            logger.logSystem("Сервер запущен на порту " + port);
+            metrics.watch(this);
+            exposeMetrics();
+            startPresence();
+            joinCluster();
+            if (settings.getServerMode() == Settings.ServerMode.NIO) {
+                acceptNio();
+            } else {
+                acceptThreads();
+            }
+        } catch (IOException e) {
+            System.err.println("Не удалось запустить сервер: " + e.getMessage());
+        } finally {
+            stop();
+        }
+    }
+
+    private void acceptThreads() throws IOException {
+        ServerSocket[] sockets = bindSockets();
+        clientExecutor = ClientExecutors.create(settings);
+        writerExecutor = ClientExecutors.writers(settings);
+        running = true;
+        System.out.println("Сервер запущен на порту " + port + describeAcceptors(sockets.length));
+        logger.logSystem("Сервер запущен на порту " + port);
+
+        for (int i = 1; i < sockets.length; i++) {
+            ServerSocket socket = sockets[i];
+            startAcceptor(i, () -> acceptThreads(socket));
+        }
+        acceptThreads(sockets[0]);
+    }
 
-            while (running) {
-                try {
-                    Socket clientSocket = serverSocket.accept();
-                    System.out.println("Новое подключение: " + clientSocket.getInetAddress());
+    private void acceptThreads(ServerSocket serverSocket) {
+        while (running) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                if (!admit()) {
+                    clientSocket.close();
+                    continue;
+                }
+                System.out.println("Новое подключение: " + clientSocket.getInetAddress());
 
-                    ClientHandler clientHandler = new ClientHandler(clientSocket, this);
-                    clients.add(clientHandler);
+                SocketClientHandler clientHandler = new SocketClientHandler(clientSocket, this);
+                addClient(clientHandler);
 
+                if (clientExecutor != null) {
+                    clientExecutor.execute(clientHandler);
+                } else {
                     new Thread(clientHandler).start();
-                } catch (IOException e) {
-                    if (running) {
-                        System.err.println("Ошибка при подключении клиента: " + e.getMessage());
-                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка при подключении клиента: " + e.getMessage());
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Не удалось запустить сервер: " + e.getMessage());
-        } finally {
-            stop();
         }
     }
 
-    public synchronized void stop() {
-        if (stopped) {
+    private void acceptNio() throws IOException {
+        ServerSocketChannel[] channels = bindChannels();
+
+        eventLoops = new EventLoop[settings.getEventLoopThreads()];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop("event-loop-" + i);
+            eventLoops[i].start();
+        }
+
+        running = true;
+        System.out.println("Сервер запущен на порту " + port + " (NIO, event loop'ов: " + eventLoops.length + ")"
+                + describeAcceptors(channels.length));
+        logger.logSystem("Сервер запущен на порту " + port);
+
+        for (int i = 1; i < channels.length; i++) {
+            ServerSocketChannel channel = channels[i];
+            EventLoop[] shard = shard(i, channels.length);
+            startAcceptor(i, () -> acceptNio(channel, shard));
+        }
+        acceptNio(channels[0], shard(0, channels.length));
+    }
+
+    private void acceptNio(ServerSocketChannel serverChannel, EventLoop[] shard) {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                if (!admit()) {
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                System.out.println("Новое подключение: " + channel.socket().getInetAddress());
+
+                EventLoop eventLoop = shard[next];
+                next = (next + 1) % shard.length;
+
+                NioClientHandler clientHandler = new NioClientHandler(channel, eventLoop, this);
+                addClient(clientHandler);
+                eventLoop.register(channel, clientHandler);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка при подключении клиента: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private ServerSocket[] bindSockets() throws IOException {
+        ServerSocket[] sockets = new ServerSocket[settings.getAcceptThreads()];
+        for (int i = 0; i < sockets.length; i++) {
+            if (i > 0 && !reusePort) {
+                sockets[i] = sockets[0];
+                continue;
+            }
+            ServerSocket socket = new ServerSocket();
+            listeners.add(socket);
+            if (i == 0) {
+                reusePort = sockets.length > 1 && supportsReusePort(socket.supportedOptions());
+            }
+            if (reusePort) {
+                socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            socket.bind(new InetSocketAddress(i == 0 ? port : sockets[0].getLocalPort()), settings.getAcceptBacklog());
+            sockets[i] = socket;
+        }
+        return sockets;
+    }
+
+    private ServerSocketChannel[] bindChannels() throws IOException {
+        ServerSocketChannel[] channels = new ServerSocketChannel[settings.getAcceptThreads()];
+        for (int i = 0; i < channels.length; i++) {
+            if (i > 0 && !reusePort) {
+                channels[i] = channels[0];
+                continue;
+            }
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            listeners.add(channel);
+            if (i == 0) {
+                reusePort = channels.length > 1 && supportsReusePort(channel.supportedOptions());
+            }
+            if (reusePort) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.bind(new InetSocketAddress(i == 0 ? port : channels[0].socket().getLocalPort()),
+                    settings.getAcceptBacklog());
+            channels[i] = channel;
+        }
+        return channels;
+    }
+
+    private boolean supportsReusePort(Set<SocketOption<?>> options) {
+        if (!settings.isAcceptReusePort()) {
+            return false;
+        }
+        if (!options.contains(StandardSocketOptions.SO_REUSEPORT)) {
+            System.err.println("SO_REUSEPORT не поддерживается, приёмники будут делить один сокет");
+            return false;
+        }
+        return true;
+    }
+
+    private EventLoop[] shard(int acceptor, int acceptors) {
+        if (eventLoops.length <= acceptor) {
+            return new EventLoop[]{eventLoops[acceptor % eventLoops.length]};
+        }
+        EventLoop[] shard = new EventLoop[(eventLoops.length - acceptor + acceptors - 1) / acceptors];
+        for (int i = 0; i < shard.length; i++) {
+            shard[i] = eventLoops[acceptor + i * acceptors];
+        }
+        return shard;
+    }
+
+    private void startAcceptor(int index, Runnable loop) {
+        Thread thread = new Thread(loop, "acceptor-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private String describeAcceptors(int acceptors) {
+        if (acceptors == 1) {
+            return "";
+        }
+        return ", приёмников: " + acceptors + (reusePort ? " (SO_REUSEPORT)" : " (общий сокет)");
+    }
+
+    boolean write(Runnable task) {
+        ExecutorService writers = writerExecutor;
+        if (writers == null) {
+            return false;
+        }
+        try {
+            writers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private boolean admit() {
+        if (admission == null || admission.tryAcquire(1, System.nanoTime())) {
+            return true;
+        }
+        metrics.connectionRejected();
+        return false;
+    }
+
+    public void stop() {
+        if (!stopped.compareAndSet(false, true)) {
             return;
         }
-        stopped = true;
 
         running = false;
         try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
+            for (Closeable listener : listeners) {
+                listener.close();
             }
             for (ClientHandler client : clients) {
                 client.disconnect();
             }
             clients.clear();
+            if (clientExecutor != null) {
+                clientExecutor.shutdownNow();
+            }
+            if (writerExecutor != null) {
+                writerExecutor.shutdownNow();
+            }
+            if (cluster != null) {
+                cluster.close();
+            }
+            if (heartbeats != null) {
+                heartbeats.stop();
+            }
+            if (presence != null) {
+                presence.stop();
+            }
+            if (fanout != null) {
+                fanout.shutdown();
+            }
+            if (eventLoops != null) {
+                for (EventLoop eventLoop : eventLoops) {
+                    eventLoop.shutdown();
+                }
+            }
+            concealMetrics();
             System.out.println("Сервер остановлен");
             logger.logSystem("Сервер остановлен");
+            logger.close();
+            saveSearch();
+            if (store != null) {
+                store.close();
+            }
         } catch (IOException e) {
             System.err.println("Ошибка при остановке сервера: " + e.getMessage());
         }
     }
 
+    void announceJoin(String username) {
+        if (presence != null) {
+            presence.joined(username);
+        } else {
+            broadcast(PresenceCoalescer.notice(username, true));
+        }
+    }
+
+    void announceExit(String username) {
+        if (presence != null) {
+            presence.left(username);
+        } else {
+            broadcast(PresenceCoalescer.notice(username, false));
+        }
+    }
+
+    String roster() {
+        if (!settings.isPresenceRoster()) {
+            return null;
+        }
+        return PresenceCoalescer.list("В чате", new ArrayList<>(usernames.keySet()), settings.getPresenceRosterMax());
+    }
+
     public void broadcast(Message message) {
+        broadcastLocal(message);
+        if (cluster != null) {
+            cluster.relay(null, message);
+        }
+    }
+
+    void broadcastLocal(Message message) {
+        if (sessions == null) {
+            publish(message);
+            return;
+        }
+        Lock lock = sessions.publishing();
+        lock.lock();
+        try {
+            publish(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(Message message) {
         if (message.getType() == Message.MessageType.SYSTEM) {
             logger.logSystem(message.getContent());
         } else {
             logger.log(message.getUsername(), message.getContent());
         }
+        long stored = record(message);
+        if (search != null && stored >= 0) {
+            search.add(stored, message);
+        }
+
+        FrameCache frames = new FrameCache(message, compressionLevel, sessions != null ? sessions.assign(stored) : -1);
+        if (message.getType() == Message.MessageType.MESSAGE) {
+            history.append(frames);
+        }
+        if (sessions != null) {
+            sessions.append(frames);
+        }
+        if (fanout != null) {
+            fanout.broadcast(frames);
+        } else {
+            deliver(frames, clients);
+        }
+    }
+
+    public void broadcastToRoom(String room, Message message) {
+        broadcastToRoomLocal(room, message);
+        if (cluster != null) {
+            cluster.relay(room, message);
+        }
+    }
+
+    void broadcastToRoomLocal(String room, Message message) {
+        logger.log(message.getUsername(), message.getContent());
+        record(message);
+        if (fanout != null) {
+            fanout.broadcast(new FrameCache(message, compressionLevel), rooms.members(room));
+        } else {
+            deliver(new FrameCache(message, compressionLevel), rooms.members(room));
+        }
+    }
+
+    private void deliver(FrameCache frames, Collection<ClientHandler> recipients) {
+        long start = System.nanoTime();
+        for (ClientHandler client : recipients) {
+            client.deliver(frames);
+        }
+        metrics.broadcastTook(System.nanoTime() - start);
+    }
+
+    public void sendDirect(ClientHandler recipient, Message message) {
+        logger.log(message.getUsername(), message.getContent());
+        record(message);
+        recipient.sendMessage(message);
+    }
+
+    private long record(Message message) {
+        if (store == null) {
+            return -1;
+        }
+        try {
+            return store.append(message);
+        } catch (IOException e) {
+            System.err.println("Ошибка записи в хранилище сообщений: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    public MessageStore getStore() {
+        return store;
+    }
 
-        for (ClientHandler client : clients) {
-            client.sendMessage(message);
+    ByteBuffer replayHistory(long until, Message.Format format) {
+        return history.replay(until, format);
+    }
+
+    List<Message> search(String query) {
+        if (search == null) {
+            return null;
+        }
+        List<Message> found = new ArrayList<>();
+        for (long sequence : search.search(query, settings.getSearchResultsMax())) {
+            List<MessageStore.Record> records = store.readFrom(sequence, 1);
+            if (!records.isEmpty() && records.get(0).getSequence() == sequence) {
+                found.add(records.get(0).getMessage());
+            }
         }
+        metrics.searchQuery();
+        return found;
+    }
+
+    int getSearchTermCount() {
+        return search != null ? search.getTermCount() : 0;
+    }
+
+    SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    int getSessionCount() {
+        return sessions != null ? sessions.size() : 0;
+    }
+
+    void resume(ClientHandler client, SessionRegistry.Session session, long after) {
+        Lock lock = sessions.resuming();
+        long until;
+        lock.lock();
+        try {
+            long position = sessions.position();
+            if (fanout != null) {
+                fanout.execute(client, () -> client.resumed(session, after, position));
+                return;
+            }
+            client.holdDeliveries();
+            until = position;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            client.resumed(session, after, until);
+        } finally {
+            client.releaseDeliveries();
+        }
+    }
+
+    boolean registerUsername(String username, ClientHandler client) {
+        ClientHandler existing = usernames.putIfAbsent(username, client);
+        return existing == null || existing == client;
+    }
+
+    void unregisterUsername(String username, ClientHandler client) {
+        usernames.remove(username, client);
+    }
+
+    public ClientHandler findClient(String username) {
+        return usernames.get(username);
+    }
+
+    boolean joinRoom(String room, ClientHandler client) {
+        return rooms.join(room, client);
+    }
+
+    boolean leaveRoom(String room, ClientHandler client) {
+        return rooms.leave(room, client);
+    }
+
+    boolean isRoomMember(String room, ClientHandler client) {
+        return rooms.isMember(room, client);
+    }
+
+    void addClient(ClientHandler client) {
+        clients.add(client);
+        metrics.connectionOpened();
+        if (fanout != null) {
+            fanout.add(client);
+        }
+        client.markHistory(history.position());
+        client.watchIdle();
     }
 
     public void removeClient(ClientHandler client) {
-        clients.remove(client);
+        if (clients.remove(client)) {
+            metrics.connectionClosed();
+            if (fanout != null) {
+                fanout.remove(client);
+            }
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public Collection<ClientHandler> getClients() {
+        return Collections.unmodifiableSet(clients);
+    }
+
+    int getTimerCount() {
+        return heartbeats != null ? heartbeats.size() : 0;
+    }
+
+    TimingWheel getHeartbeats() {
+        return heartbeats;
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    Settings getSettings() {
+        return settings;
+    }
+
+    private void exposeMetrics() {
+        if (settings.isMetricsJmx()) {
+            try {
+                metricsName = new ObjectName("ru.netology:type=ChatServer,port=" + port);
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics.getRegistry(), metricsName);
+            } catch (JMException e) {
+                metricsName = null;
+                System.err.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+            }
+        }
+        if (settings.getAdminPort() > 0) {
+            adminServer = new AdminServer(settings.getAdminPort(), metrics.getRegistry());
+            try {
+                adminServer.start();
+            } catch (IOException e) {
+                adminServer = null;
+                System.err.println("Не удалось открыть порт статистики: " + e.getMessage());
+            }
+        }
+    }
+
+    private void startPresence() {
+        if (settings.getPresenceWindowMillis() > 0) {
+            PresenceCoalescer coalescer = new PresenceCoalescer(this, settings, metrics);
+            coalescer.start();
+            presence = coalescer;
+        }
+    }
+
+    private void joinCluster() {
+        if (settings.getClusterPort() == 0) {
+            return;
+        }
+        try {
+            ClusterRelay relay = new ClusterRelay(this, port, settings, metrics);
+            relay.start();
+            cluster = relay;
+        } catch (IOException e) {
+            System.err.println("Не удалось открыть порт кластера: " + e.getMessage());
+        }
+    }
+
+    int getConnectedPeers() {
+        return cluster != null ? cluster.getConnectedPeers() : 0;
+    }
+
+    private void concealMetrics() {
+        if (adminServer != null) {
+            adminServer.close();
+        }
+        if (metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+            } catch (JMException e) {
+                System.err.println("Не удалось снять метрики из JMX: " + e.getMessage());
+            }
+        }
+    }
+
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Metrics getMetricsRegistry() {
+        return metrics.getRegistry();
+    }
+
+    private static MessageStore openStore(Settings settings) {
+        if (settings.getStoreDirectory().isEmpty()) {
+            return null;
+        }
+        try {
+            return new MessageStore(settings);
+        } catch (IOException e) {
+            System.err.println("Не удалось открыть хранилище сообщений: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static SearchIndex openSearch(Settings settings, MessageStore store) {
+        if (!settings.isSearchEnabled()) {
+            return null;
+        }
+        if (store == null) {
+            System.err.println("Поиск требует хранилища сообщений (store.dir) и будет выключен");
+            return null;
+        }
+        return SearchIndex.open(Path.of(settings.getStoreDirectory()), store);
+    }
+
+    private void saveSearch() {
+        if (search == null) {
+            return;
+        }
+        try {
+            search.save();
+        } catch (IOException e) {
+            System.err.println("Не удалось сохранить индекс поиска: " + e.getMessage());
+        }
     }
 
     public static void main(String[] args) {
@@ -97,7 +701,7 @@ public class ChatServer {
             Settings settings = new Settings();
             int port = settings.getPort();
 
-            ChatServer server = new ChatServer(port);
+            ChatServer server = new ChatServer(port, settings);
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\nОстановка сервера...");
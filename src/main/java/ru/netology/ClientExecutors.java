@@ -0,0 +1,67 @@
+package ru.netology;
+
+import ru.netology.common.Settings;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class ClientExecutors {
+
+    private ClientExecutors() {
+    }
+
+    static ExecutorService create(Settings settings) {
+        switch (settings.getServerMode()) {
+            case VIRTUAL:
+                ExecutorService virtual = virtualThreadPerTask();
+                if (virtual != null) {
+                    return virtual;
+                }
+                System.err.println("Виртуальные потоки недоступны в этой JVM, используется пул потоков");
+                return Executors.newCachedThreadPool(namedThreads("client-"));
+            case POOL:
+                int threads = settings.getPoolThreads();
+                return threads > 0
+                        ? Executors.newFixedThreadPool(threads, namedThreads("client-"))
+                        : Executors.newCachedThreadPool(namedThreads("client-"));
+            default:
+                return null;
+        }
+    }
+
+    static ExecutorService writers(Settings settings) {
+        if (settings.getServerMode() == Settings.ServerMode.VIRTUAL) {
+            ExecutorService virtual = virtualThreadPerTask();
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        return Executors.newCachedThreadPool(namedThreads("writer-"));
+    }
+
+    static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService virtualThreadPerTask() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> new Thread(task, prefix + counter.incrementAndGet());
+    }
+}
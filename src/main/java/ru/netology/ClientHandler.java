@@ -1,72 +1,315 @@
 package ru.netology;
 
+import ru.netology.common.BinaryCodec;
 import ru.netology.common.Message;
+import ru.netology.common.Settings;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
-
-public class ClientHandler implements Runnable {
-    private final Socket socket;
-    private final ChatServer server;
-    private BufferedReader in;
-    private PrintWriter out;
-    private String username;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public abstract class ClientHandler {
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+    private static final int MAX_ROOM_NAME_LENGTH = 64;
+    private static final Message PING = new Message(Message.MessageType.PING, "SYSTEM", "");
+    private static final Message PONG = new Message(Message.MessageType.PONG, "SYSTEM", "");
+
+    protected final ChatServer server;
+    protected final ServerMetrics metrics;
+    protected final Framer.MessageConsumer inbound;
+    private final BlockingQueue<ByteBuffer> outbound;
+    private final Settings.SlowConsumerPolicy slowConsumerPolicy;
+    private final LongAdder dropped;
+    private final TokenBucket messageBucket;
+    private final TokenBucket byteBucket;
+    private final Settings.RateLimitAction rateLimitAction;
+    private final int compressionLevel;
+    private final TimingWheel heartbeats;
+    private final long heartbeatIntervalNanos;
+    private final long heartbeatTimeoutNanos;
+    private final Set<String> rooms;
+    private volatile String username;
+    private volatile Message.Format format;
     private volatile boolean connected;
+    private volatile boolean sequenced;
+    private volatile SessionRegistry.Session session;
+    private volatile long historyMark;
+    private final AtomicLong firstLive;
+    private final ReentrantLock holdLock;
+    private final int holdCapacity;
+    private ArrayDeque<FrameCache> held;
+    private volatile boolean holding;
+    private long throttleNanos;
+    private volatile long lastActivity;
+    private volatile TimingWheel.Timeout heartbeat;
+    private long pingedFor;
 
-    public ClientHandler(Socket socket, ChatServer server) {
-        this.socket = socket;
+    protected ClientHandler(ChatServer server) {
         this.server = server;
+        this.metrics = server.getMetrics();
+        this.outbound = new ArrayBlockingQueue<>(server.getSettings().getClientQueueCapacity());
+        this.slowConsumerPolicy = server.getSettings().getSlowConsumerPolicy();
+        this.dropped = new LongAdder();
+        Settings settings = server.getSettings();
+        this.messageBucket = settings.getMessageRate() > 0
+                ? new TokenBucket(settings.getMessageRate(), settings.getMessageBurst())
+                : null;
+        this.byteBucket = settings.getByteRate() > 0
+                ? new TokenBucket(settings.getByteRate(), settings.getByteBurst())
+                : null;
+        this.rateLimitAction = settings.getRateLimitAction();
+        this.compressionLevel = settings.getCompressionLevel();
+        this.heartbeats = server.getHeartbeats();
+        this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getHeartbeatIntervalMillis());
+        this.heartbeatTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.getHeartbeatTimeoutMillis());
+        this.lastActivity = System.nanoTime();
+        this.inbound = new Framer.MessageConsumer() {
+            @Override
+            public boolean accept(Message message) {
+                return dispatch(message);
+            }
+
+            @Override
+            public boolean admit(int bytes) {
+                return ClientHandler.this.admit(bytes);
+            }
+        };
+        this.rooms = ConcurrentHashMap.newKeySet();
+        this.firstLive = new AtomicLong(Long.MAX_VALUE);
+        this.holdLock = new ReentrantLock();
+        this.holdCapacity = settings.getClientQueueCapacity();
         this.connected = true;
     }
 
-    @Override
-    public void run() {
-        try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
-
-            String line;
-            while (connected && (line = in.readLine()) != null) {
-                Message message = Message.deserialize(line);
-
-                if (message == null) {
-                    continue;
-                }
-
-                switch (message.getType()) {
-                    case JOIN:
-                        handleJoin(message);
-                        break;
-                    case MESSAGE:
-                        handleMessage(message);
-                        break;
-                    case EXIT:
-                        handleExit(message);
-                        return;
-                }
+    protected boolean admit(int bytes) {
+        if (!connected) {
+            return false;
+        }
+        if (messageBucket == null && byteBucket == null) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (rateLimitAction == Settings.RateLimitAction.THROTTLE) {
+            long delay = messageBucket != null ? messageBucket.acquire(1, now) : 0;
+            if (byteBucket != null) {
+                delay = Math.max(delay, byteBucket.acquire(bytes, now));
             }
-        } catch (IOException e) {
-            if (connected) {
-                System.err.println("Ошибка при обработке клиента: " + e.getMessage());
+            if (delay > 0) {
+                metrics.rateLimited();
+                throttleNanos = Math.max(throttleNanos, delay);
             }
-        } finally {
+            return true;
+        }
+        if ((messageBucket == null || messageBucket.tryAcquire(1, now))
+                && (byteBucket == null || byteBucket.tryAcquire(bytes, now))) {
+            return true;
+        }
+        metrics.rateLimited();
+        if (rateLimitAction == Settings.RateLimitAction.DISCONNECT) {
+            System.out.println("Отключён клиент, превысивший лимит сообщений: " + username);
             disconnect();
         }
+        return false;
+    }
+
+    protected void markActive() {
+        lastActivity = System.nanoTime();
+    }
+
+    void watchIdle() {
+        if (heartbeats != null) {
+            scheduleHeartbeat(heartbeatIntervalNanos);
+        }
     }
 
-    private void handleJoin(Message message) {
-        username = message.getUsername();
+    private void checkIdle() {
+        if (!connected) {
+            return;
+        }
+        long active = lastActivity;
+        long idle = System.nanoTime() - active;
+        if (idle < heartbeatIntervalNanos) {
+            scheduleHeartbeat(heartbeatIntervalNanos - idle);
+            return;
+        }
+        if (idle >= heartbeatIntervalNanos + heartbeatTimeoutNanos) {
+            metrics.connectionTimedOut();
+            System.out.println("Клиент не отвечает, соединение закрыто: " + username);
+            disconnect();
+            return;
+        }
+        if (pingedFor != active) {
+            pingedFor = active;
+            sendMessage(PING);
+        }
+        scheduleHeartbeat(heartbeatIntervalNanos + heartbeatTimeoutNanos - idle);
+    }
+
+    private void scheduleHeartbeat(long delayNanos) {
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(delayNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        TimingWheel.Timeout timeout = heartbeats.schedule(delayMillis, this::checkIdle);
+        heartbeat = timeout;
+        if (!connected) {
+            timeout.cancel();
+        }
+    }
+
+    protected long takeThrottleNanos() {
+        long delay = throttleNanos;
+        throttleNanos = 0;
+        return delay;
+    }
+
+    protected boolean dispatch(Message message) {
+        if (message == null) {
+            metrics.parseFailure();
+            return true;
+        }
+        metrics.messageIn();
+
+        switch (message.getType()) {
+            case JOIN:
+                handleJoin(message);
+                break;
+            case MESSAGE:
+                handleMessage(message);
+                break;
+            case EXIT:
+                handleExit(message);
+                return false;
+            case ROOM_JOIN:
+                handleRoomJoin(message);
+                break;
+            case ROOM_LEAVE:
+                handleRoomLeave(message);
+                break;
+            case ROOM_MESSAGE:
+                handleRoomMessage(message);
+                break;
+            case DIRECT:
+                handleDirect(message);
+                break;
+            case RESUME:
+                handleResume(message);
+                break;
+            case SEARCH:
+                handleSearch(message);
+                break;
+            case PING:
+                sendMessage(PONG);
+                break;
+            case PONG:
+            case SESSION:
+            case SEQ:
+                break;
+        }
+        return true;
+    }
+
+    private boolean handleJoin(Message message) {
+        String requested = message.getUsername();
+        if (!server.registerUsername(requested, this)) {
+            sendSystemMessage("Имя " + requested + " уже занято");
+            return false;
+        }
+        if (username == null) {
+            replayHistory();
+        } else if (!username.equals(requested)) {
+            server.unregisterUsername(username, this);
+        }
+        username = requested;
         System.out.println(username + " присоединился к чату");
+        server.announceJoin(username);
+
+        String roster = server.roster();
+        if (roster != null) {
+            sendSystemMessage(roster);
+        }
+        return true;
+    }
+
+    private void handleResume(Message message) {
+        SessionRegistry registry = server.getSessions();
+        if (registry == null) {
+            handleJoin(message);
+            return;
+        }
+        String requested = message.getUsername();
+        String content = message.getContent();
+        int separator = content.lastIndexOf(':');
+        if (separator > 0) {
+            SessionRegistry.Session previous = registry.find(content.substring(0, separator), requested);
+            long after = parseSequence(content.substring(separator + 1));
+            if (previous != null && after >= -1) {
+                resumeSession(previous, requested, after);
+                return;
+            }
+            sendSystemMessage("Сессия не найдена или истекла, начата новая");
+        }
+        if (session == null && handleJoin(message)) {
+            session = registry.open(requested, this);
+            server.resume(this, session, -1);
+        }
+    }
+
+    private void resumeSession(SessionRegistry.Session resumed, String requested, long after) {
+        ClientHandler previous = resumed.attach(this);
+        if (previous != null && previous != this) {
+            previous.disconnect();
+        }
+        if (!server.registerUsername(requested, this)) {
+            resumed.detach(this);
+            sendSystemMessage("Имя " + requested + " уже занято");
+            return;
+        }
+        if (username != null && !username.equals(requested)) {
+            server.unregisterUsername(username, this);
+        }
+        username = requested;
+        session = resumed;
+        System.out.println(username + " возобновил сессию");
+        server.resume(this, resumed, after);
+    }
 
-        Message systemMessage = new Message(
-                Message.MessageType.SYSTEM,
-                "SYSTEM",
-                username + " присоединился к чату"
-        );
-        server.broadcast(systemMessage);
+    void resumed(SessionRegistry.Session resumed, long after, long until) {
+        sequenced = true;
+        sendMessage(new Message(Message.MessageType.SESSION, "SYSTEM", resumed.getToken() + ":" + (until - 1)));
+        if (after < 0) {
+            return;
+        }
+        SessionRegistry registry = server.getSessions();
+        long from = registry.replayFrom(after, until);
+        if (from > after + 1) {
+            sendSystemMessage("Сообщения до №" + from + " недоступны");
+        }
+        ByteBuffer gap = registry.replay(from, until, getFormat());
+        if (gap != null) {
+            sendFrame(gap);
+        }
+        metrics.sessionResumed(gap != null ? gap.remaining() : 0);
+    }
+
+    private static long parseSequence(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private void replayHistory() {
+        ByteBuffer backlog = server.replayHistory(Math.min(historyMark, firstLive.get()), getFormat());
+        if (backlog != null) {
+            sendFrame(backlog);
+        }
     }
 
     private void handleMessage(Message message) {
@@ -76,33 +319,294 @@ public class ClientHandler implements Runnable {
 
     private void handleExit(Message message) {
         System.out.println(message.getUsername() + " покинул чат");
-
-        Message systemMessage = new Message(
-                Message.MessageType.SYSTEM,
-                "SYSTEM",
-                message.getUsername() + " покинул чат"
-        );
-        server.broadcast(systemMessage);
+        server.announceExit(message.getUsername());
+        SessionRegistry.Session current = session;
+        if (current != null) {
+            server.getSessions().close(current);
+        }
 
         disconnect();
     }
 
+    private void handleRoomJoin(Message message) {
+        String room = message.getContent();
+        if (!isValidRoomName(room)) {
+            sendSystemMessage("Некорректное имя комнаты: " + room);
+            return;
+        }
+        if (server.joinRoom(room, this)) {
+            rooms.add(room);
+            server.broadcastToRoom(room, roomNotice(room, message.getUsername() + " вошёл в комнату"));
+        }
+    }
+
+    private void handleRoomLeave(Message message) {
+        String room = message.getContent();
+        if (server.leaveRoom(room, this)) {
+            rooms.remove(room);
+            server.broadcastToRoom(room, roomNotice(room, message.getUsername() + " покинул комнату"));
+        }
+    }
+
+    private void handleRoomMessage(Message message) {
+        String content = message.getContent();
+        int separator = content.indexOf(':');
+        String room = separator > 0 ? content.substring(0, separator) : "";
+        if (!server.isRoomMember(room, this)) {
+            sendSystemMessage("Вы не состоите в комнате: " + room);
+            return;
+        }
+        server.broadcastToRoom(room, message);
+    }
+
+    private void handleDirect(Message message) {
+        if (username == null) {
+            sendSystemMessage("Сначала войдите в чат");
+            return;
+        }
+        String content = message.getContent();
+        int separator = content.indexOf(':');
+        String recipientName = separator > 0 ? content.substring(0, separator) : "";
+        ClientHandler recipient = server.findClient(recipientName);
+        if (recipient == null) {
+            sendSystemMessage("Пользователь не найден: " + recipientName);
+            return;
+        }
+
+        Message direct = new Message(Message.MessageType.DIRECT, username, content);
+        server.sendDirect(recipient, direct);
+        if (recipient != this) {
+            sendMessage(direct);
+        }
+    }
+
+    private void handleSearch(Message message) {
+        if (username == null) {
+            sendSystemMessage("Сначала войдите в чат");
+            return;
+        }
+        List<Message> found = server.search(message.getContent());
+        if (found == null) {
+            sendSystemMessage("Поиск выключен");
+            return;
+        }
+        for (Message hit : found) {
+            sendMessage(new Message(Message.MessageType.SEARCH, hit.getUsername(), hit.getContent()));
+        }
+        sendMessage(new Message(Message.MessageType.SEARCH, "SYSTEM", "Найдено: " + found.size()));
+    }
+
+    private Message roomNotice(String room, String text) {
+        return new Message(Message.MessageType.ROOM_MESSAGE, "SYSTEM", room + ":" + text);
+    }
+
+    private boolean isValidRoomName(String room) {
+        return !room.isBlank() && room.length() <= MAX_ROOM_NAME_LENGTH && room.indexOf(':') < 0;
+    }
+
+    protected void sendSystemMessage(String text) {
+        sendMessage(new Message(Message.MessageType.SYSTEM, "SYSTEM", text));
+    }
+
     public void sendMessage(Message message) {
-        if (out != null && connected) {
-            out.println(message.serialize());
+        sendFrame(message.toFrame(getFormat(), compressionLevel));
+    }
+
+    void deliver(FrameCache frames) {
+        long position = frames.getHistoryPosition();
+        if (position >= 0 && position < firstLive.get()) {
+            firstLive.accumulateAndGet(position, Math::min);
+        }
+        if (holding && hold(frames)) {
+            return;
+        }
+        sendFrame(frames.get(getFormat(), isSequenced()));
+    }
+
+    void holdDeliveries() {
+        holdLock.lock();
+        try {
+            held = new ArrayDeque<>();
+            holding = true;
+        } finally {
+            holdLock.unlock();
+        }
+    }
+
+    void releaseDeliveries() {
+        holdLock.lock();
+        try {
+            if (!holding) {
+                return;
+            }
+            for (FrameCache frames : held) {
+                sendFrame(frames.get(getFormat(), isSequenced()));
+            }
+            held = null;
+            holding = false;
+        } finally {
+            holdLock.unlock();
+        }
+    }
+
+    private boolean hold(FrameCache frames) {
+        holdLock.lock();
+        try {
+            if (!holding) {
+                return false;
+            }
+            if (held.size() >= holdCapacity) {
+                held.poll();
+                drop();
+            }
+            held.add(frames);
+            return true;
+        } finally {
+            holdLock.unlock();
+        }
+    }
+
+    public void sendFrame(ByteBuffer frame) {
+        if (!connected) {
+            return;
+        }
+        if (!outbound.offer(frame)) {
+            switch (slowConsumerPolicy) {
+                case DROP_NEWEST:
+                    drop();
+                    return;
+                case DROP_OLDEST:
+                    do {
+                        if (!connected) {
+                            return;
+                        }
+                        ByteBuffer oldest = outbound.poll();
+                        if (oldest == CLOSED) {
+                            closeOutbound();
+                            return;
+                        }
+                        if (oldest != null) {
+                            drop();
+                        }
+                    } while (!outbound.offer(frame));
+                    break;
+                case DISCONNECT:
+                    drop();
+                    System.out.println("Отключён медленный клиент: " + username);
+                    disconnect();
+                    return;
+            }
+        }
+        outboundReady();
+    }
+
+    private void drop() {
+        dropped.increment();
+        metrics.messageDropped();
+    }
+
+    protected ByteBuffer pollOutbound() {
+        ByteBuffer frame;
+        while ((frame = outbound.poll()) != null && frame != CLOSED) {
+            if (matchesFormat(frame)) {
+                metrics.messageOut(frame.remaining());
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    protected ByteBuffer pollOutbound(long timeoutNanos) throws InterruptedException {
+        ByteBuffer frame;
+        long deadline = System.nanoTime() + timeoutNanos;
+        while ((frame = outbound.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null
+                && frame != CLOSED) {
+            if (matchesFormat(frame)) {
+                metrics.messageOut(frame.remaining());
+                return frame;
+            }
         }
+        return null;
+    }
+
+    protected boolean hasOutbound() {
+        return connected && !outbound.isEmpty();
+    }
+
+    private boolean matchesFormat(ByteBuffer frame) {
+        Message.Format current = format;
+        return current == null || current == Message.Format.TEXT || BinaryCodec.isFrame(frame);
+    }
+
+    void markHistory(long position) {
+        historyMark = position;
+    }
+
+    protected void negotiated(Message.Format format) {
+        this.format = format;
+        releaseDeliveries();
+    }
+
+    protected boolean isNegotiated() {
+        return format != null;
+    }
+
+    public Message.Format getFormat() {
+        Message.Format current = format;
+        return current != null ? current : Message.Format.TEXT;
+    }
+
+    protected void outboundReady() {
     }
 
     public void disconnect() {
         connected = false;
+        SessionRegistry.Session current = session;
+        if (current != null) {
+            current.detach(this);
+        }
+        TimingWheel.Timeout timeout = heartbeat;
+        if (timeout != null) {
+            timeout.cancel();
+        }
         server.removeClient(this);
+        for (String room : rooms) {
+            server.leaveRoom(room, this);
+        }
+        rooms.clear();
+        if (username != null) {
+            server.unregisterUsername(username, this);
+        }
+        closeConnection();
+        closeOutbound();
+    }
 
-        try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (socket != null && !socket.isClosed()) socket.close();
-        } catch (IOException e) {
-            System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
+    private void closeOutbound() {
+        outbound.clear();
+        while (!outbound.offer(CLOSED)) {
+            outbound.poll();
         }
     }
+
+    boolean isSequenced() {
+        return sequenced;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getQueueDepth() {
+        return outbound.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    protected abstract void closeConnection();
 }
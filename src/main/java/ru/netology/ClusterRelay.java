@@ -0,0 +1,367 @@
+package ru.netology;
+
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+class ClusterRelay {
+    private static final int MAGIC = 0x4E43524C;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NONCE_LENGTH = 16;
+    private static final int PROOF_LENGTH = 32;
+    private static final long ORIGIN_TTL_MILLIS = 5 * 60 * 1000;
+
+    private final ChatServer server;
+    private final ServerMetrics metrics;
+    private final int port;
+    private final String bind;
+    private final String secret;
+    private final String origin;
+    private final int batchSize;
+    private final int reconnectMillis;
+    private final List<PeerLink> peers;
+    private final ConcurrentMap<String, Origin> origins;
+    private final Set<Socket> inbound;
+    private final SecureRandom random;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    ClusterRelay(ChatServer server, int serverPort, Settings settings, ServerMetrics metrics) {
+        this.server = server;
+        this.metrics = metrics;
+        this.port = settings.getClusterPort();
+        this.bind = settings.getClusterBind();
+        this.secret = settings.getClusterSecret();
+        String node = settings.getClusterNode();
+        this.origin = (node.isEmpty() ? "port-" + serverPort : node) + "@" + System.currentTimeMillis();
+        this.batchSize = settings.getClusterBatchSize();
+        this.reconnectMillis = settings.getClusterReconnectMillis();
+        this.peers = new ArrayList<>();
+        for (InetSocketAddress address : settings.getClusterPeers()) {
+            peers.add(new PeerLink(address, settings.getClusterQueueCapacity()));
+        }
+        this.origins = new ConcurrentHashMap<>();
+        this.inbound = ConcurrentHashMap.newKeySet();
+        this.random = new SecureRandom();
+        metrics.getRegistry().gauge("cluster.peers.connected", this::getConnectedPeers);
+    }
+
+    void start() throws IOException {
+        InetAddress address = InetAddress.getByName(bind);
+        if (secret.isEmpty() && !address.isLoopbackAddress()) {
+            throw new IOException("для адреса " + bind + " нужен cluster.secret");
+        }
+        serverSocket = new ServerSocket(port, 50, address);
+        running = true;
+        for (PeerLink peer : peers) {
+            Thread thread = new Thread(peer, "cluster-link-" + peer.address);
+            thread.setDaemon(true);
+            peer.thread = thread;
+            thread.start();
+        }
+
+        Thread acceptor = new Thread(this::accept, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Узел " + origin + " принимает соседей на " + address.getHostAddress() + ":" + port);
+    }
+
+    void relay(String room, Message message) {
+        if (peers.isEmpty()) {
+            return;
+        }
+        Relay relay = new Relay(room == null ? "" : room, BinaryCodec.encode(message));
+        for (PeerLink peer : peers) {
+            peer.enqueue(relay);
+        }
+    }
+
+    int getConnectedPeers() {
+        int connected = 0;
+        for (PeerLink peer : peers) {
+            if (peer.socket != null) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии порта кластера: " + e.getMessage());
+        }
+        for (PeerLink peer : peers) {
+            peer.close();
+        }
+        for (Socket socket : inbound) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+                expireOrigins();
+                Thread thread = new Thread(() -> receive(socket), "cluster-in-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка при подключении узла: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        String peer = String.valueOf(socket.getRemoteSocketAddress());
+        Origin from = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE))) {
+            byte[] nonce = new byte[NONCE_LENGTH];
+            random.nextBytes(nonce);
+            socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            socket.getOutputStream().write(nonce);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("неизвестный протокол");
+            }
+            String claimed = in.readUTF();
+            byte[] proof = new byte[PROOF_LENGTH];
+            in.readFully(proof);
+            if (!MessageDigest.isEqual(proof, prove(secret, nonce, claimed))) {
+                throw new IOException("узел не подтвердил cluster.secret");
+            }
+            socket.setSoTimeout(0);
+            peer = claimed;
+            from = origins.compute(peer, (key, existing) -> {
+                Origin entry = existing != null ? existing : new Origin();
+                entry.connections++;
+                return entry;
+            });
+            while (running) {
+                long number = in.readLong();
+                String room = in.readUTF();
+                Message message = BinaryCodec.read(in);
+                if (message == null) {
+                    throw new EOFException();
+                }
+                deliver(from, number, room, message);
+            }
+        } catch (EOFException e) {
+            if (running) {
+                System.out.println("Узел " + peer + " отключился");
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Ошибка связи с узлом " + peer + ": " + e.getMessage());
+            }
+        } finally {
+            if (from != null) {
+                detach(peer, from);
+            }
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void detach(String peer, Origin from) {
+        origins.computeIfPresent(peer, (key, entry) -> {
+            if (entry == from && --entry.connections == 0) {
+                entry.detachedAt = System.currentTimeMillis();
+            }
+            return entry;
+        });
+    }
+
+    private void expireOrigins() {
+        long now = System.currentTimeMillis();
+        for (String peer : origins.keySet()) {
+            origins.computeIfPresent(peer, (key, entry) ->
+                    entry.connections == 0 && now - entry.detachedAt > ORIGIN_TTL_MILLIS ? null : entry);
+        }
+    }
+
+    static byte[] prove(String secret, byte[] nonce, String origin) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(("cluster:" + secret).getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(nonce);
+            return mac.doFinal(origin.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deliver(Origin from, long number, String room, Message message) {
+        from.lock.lock();
+        try {
+            if (number <= from.delivered) {
+                metrics.relayDuplicate();
+                return;
+            }
+            from.delivered = number;
+            metrics.relayIn();
+            if (room.isEmpty()) {
+                server.broadcastLocal(message);
+            } else {
+                server.broadcastToRoomLocal(room, message);
+            }
+        } finally {
+            from.lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class Origin {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long delivered;
+        private int connections;
+        private long detachedAt;
+    }
+
+    private static final class Relay {
+        private final String room;
+        private final ByteBuffer frame;
+
+        private Relay(String room, ByteBuffer frame) {
+            this.room = room;
+            this.frame = frame;
+        }
+    }
+
+    private final class PeerLink implements Runnable {
+        private final InetSocketAddress address;
+        private final BlockingQueue<Relay> queue;
+        private final List<Relay> batch;
+        private long sequence;
+        private long batchFirst;
+        private volatile Socket socket;
+        private Thread thread;
+
+        private PeerLink(InetSocketAddress address, int capacity) {
+            this.address = address;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        private void enqueue(Relay relay) {
+            while (!queue.offer(relay)) {
+                if (queue.poll() != null) {
+                    metrics.relayDropped();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try (Socket connection = new Socket()) {
+                    connection.connect(new InetSocketAddress(address.getHostString(), address.getPort()),
+                            CONNECT_TIMEOUT_MILLIS);
+                    connection.setTcpNoDelay(true);
+                    connection.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                    byte[] nonce = new byte[NONCE_LENGTH];
+                    new DataInputStream(connection.getInputStream()).readFully(nonce);
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE));
+                    out.writeInt(MAGIC);
+                    out.writeUTF(origin);
+                    out.write(prove(secret, nonce, origin));
+                    out.flush();
+                    socket = connection;
+                    System.out.println("Связь с узлом " + address + " установлена");
+                    send(out);
+                } catch (IOException e) {
+                    if (running && socket != null) {
+                        System.err.println("Потеряна связь с узлом " + address + ": " + e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    socket = null;
+                }
+                try {
+                    Thread.sleep(reconnectMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void send(DataOutputStream out) throws IOException, InterruptedException {
+            byte[] frame = new byte[BUFFER_SIZE];
+            while (running) {
+                if (batch.isEmpty()) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, batchSize - 1);
+                    batchFirst = sequence + 1;
+                    sequence += batch.size();
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    Relay relay = batch.get(i);
+                    int length = relay.frame.remaining();
+                    if (frame.length < length) {
+                        frame = new byte[length];
+                    }
+                    relay.frame.get(relay.frame.position(), frame, 0, length);
+                    out.writeLong(batchFirst + i);
+                    out.writeUTF(relay.room);
+                    out.write(frame, 0, length);
+                }
+                out.flush();
+                metrics.relayOut(batch.size());
+                batch.clear();
+            }
+        }
+
+        private void close() {
+            Socket current = socket;
+            if (current != null) {
+                closeQuietly(current);
+            }
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.netology;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class EventLoop implements Runnable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private final PriorityQueue<Timer> timers;
+    private final ByteBuffer readBuffer;
+    private final Thread thread;
+    private volatile boolean running;
+
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.timers = new PriorityQueue<>();
+        this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    void schedule(long delayMillis, Runnable task) {
+        long deadline = System.nanoTime() + delayMillis * 1_000_000;
+        execute(() -> timers.add(new Timer(deadline, task)));
+    }
+
+    void register(SocketChannel channel, NioClientHandler handler) {
+        execute(() -> {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, handler);
+                handler.attach(key);
+            } catch (ClosedChannelException e) {
+                handler.disconnect();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (timers.isEmpty()) {
+                    selector.select();
+                } else {
+                    long delayNanos = timers.peek().deadline - System.nanoTime();
+                    selector.select(Math.max(1, delayNanos / 1_000_000));
+                }
+            } catch (IOException e) {
+                System.err.println("Ошибка селектора: " + e.getMessage());
+                break;
+            }
+            runTasks();
+            processSelectedKeys();
+            runTimers();
+        }
+        closeSelector();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка в event loop: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTimers() {
+        long now = System.nanoTime();
+        while (!timers.isEmpty() && timers.peek().deadline - now <= 0) {
+            Runnable task = timers.poll().task;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка в event loop: " + e.getMessage());
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            NioClientHandler handler = (NioClientHandler) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    handler.onReadable(readBuffer);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    handler.onWritable();
+                }
+            } catch (CancelledKeyException e) {
+                handler.disconnect();
+            }
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void closeSelector() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии селектора: " + e.getMessage());
+        }
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+        final long deadline;
+        final Runnable task;
+
+        Timer(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            return Long.compare(deadline - other.deadline, 0);
+        }
+    }
+}
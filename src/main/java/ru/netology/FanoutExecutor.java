@@ -0,0 +1,162 @@
+package ru.netology;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class FanoutExecutor {
+    private static final long ENQUEUE_POLL_MILLIS = 10;
+    private static final ThreadLocal<Boolean> LANE_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final ThreadPoolExecutor[] lanes;
+    private final List<Set<ClientHandler>> members;
+    private final ServerMetrics metrics;
+
+    FanoutExecutor(int threads, int capacity, ServerMetrics metrics) {
+        this.lanes = new ThreadPoolExecutor[threads];
+        this.members = new ArrayList<>(threads);
+        this.metrics = metrics;
+        for (int i = 0; i < threads; i++) {
+            String name = "broadcast-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+                    task -> {
+                        Thread thread = new Thread(() -> {
+                            LANE_THREAD.set(true);
+                            task.run();
+                        }, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    FanoutExecutor::awaitSpace);
+            members.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    void add(ClientHandler client) {
+        members.get(lane(client)).add(client);
+    }
+
+    void remove(ClientHandler client) {
+        members.get(lane(client)).remove(client);
+    }
+
+    void broadcast(FrameCache frames) {
+        Completion completion = new Completion(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            Set<ClientHandler> lane = members.get(i);
+            if (lane.isEmpty()) {
+                completion.done();
+                continue;
+            }
+            submit(i, completion, () -> {
+                for (ClientHandler client : lane) {
+                    client.deliver(frames);
+                }
+            });
+        }
+    }
+
+    void broadcast(FrameCache frames, Collection<ClientHandler> recipients) {
+        List<List<ClientHandler>> partitions = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            partitions.add(null);
+        }
+        int used = 0;
+        for (ClientHandler client : recipients) {
+            int lane = lane(client);
+            List<ClientHandler> partition = partitions.get(lane);
+            if (partition == null) {
+                partition = new ArrayList<>();
+                partitions.set(lane, partition);
+                used++;
+            }
+            partition.add(client);
+        }
+        if (used == 0) {
+            return;
+        }
+        Completion completion = new Completion(used);
+        for (int i = 0; i < lanes.length; i++) {
+            List<ClientHandler> partition = partitions.get(i);
+            if (partition != null) {
+                submit(i, completion, () -> {
+                    for (ClientHandler client : partition) {
+                        client.deliver(frames);
+                    }
+                });
+            }
+        }
+    }
+
+    void execute(ClientHandler client, Runnable task) {
+        try {
+            lanes[lane(client)].execute(task);
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    private static void awaitSpace(Runnable task, ThreadPoolExecutor lane) {
+        if (LANE_THREAD.get() && !lane.isShutdown()) {
+            task.run();
+            return;
+        }
+        try {
+            while (!lane.isShutdown()) {
+                if (lane.getQueue().offer(task, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new RejectedExecutionException("Поток рассылки остановлен");
+    }
+
+    private void submit(int lane, Completion completion, Runnable delivery) {
+        try {
+            lanes[lane].execute(() -> {
+                try {
+                    delivery.run();
+                } finally {
+                    completion.done();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            completion.done();
+        }
+    }
+
+    private int lane(ClientHandler client) {
+        int hash = System.identityHashCode(client);
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    private final class Completion {
+        private final long start;
+        private final AtomicInteger remaining;
+
+        private Completion(int lanes) {
+            this.start = System.nanoTime();
+            this.remaining = new AtomicInteger(lanes);
+        }
+
+        private void done() {
+            if (remaining.decrementAndGet() == 0) {
+                metrics.broadcastTook(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.netology;
+
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.Deflater;
+
+final class FrameCache {
+    private final Message message;
+    private final int compressionLevel;
+    private final long sequence;
+    private final AtomicReferenceArray<ByteBuffer> sequenced;
+    private volatile ByteBuffer text;
+    private volatile ByteBuffer binary;
+    private volatile ByteBuffer deflated;
+    private long historyPosition;
+
+    FrameCache(Message message) {
+        this(message, Deflater.BEST_SPEED);
+    }
+
+    FrameCache(Message message, int compressionLevel) {
+        this(message, compressionLevel, -1);
+    }
+
+    FrameCache(Message message, int compressionLevel, long sequence) {
+        this.message = message;
+        this.compressionLevel = compressionLevel;
+        this.sequence = sequence;
+        this.sequenced = sequence >= 0 ? new AtomicReferenceArray<>(Message.Format.values().length) : null;
+        this.historyPosition = -1;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getHistoryPosition() {
+        return historyPosition;
+    }
+
+    void setHistoryPosition(long position) {
+        historyPosition = position;
+    }
+
+    ByteBuffer get(Message.Format format, boolean withSequence) {
+        if (!withSequence || sequenced == null) {
+            return get(format);
+        }
+        ByteBuffer frame = sequenced.get(format.ordinal());
+        if (frame == null) {
+            ByteBuffer marker = new Message(Message.MessageType.SEQ, "SYSTEM", String.valueOf(sequence))
+                    .toFrame(format, compressionLevel);
+            ByteBuffer body = get(format);
+            ByteBuffer joined = ByteBuffer.allocate(marker.remaining() + body.remaining());
+            joined.put(marker.duplicate()).put(body.duplicate()).flip();
+            frame = joined.asReadOnlyBuffer();
+            sequenced.set(format.ordinal(), frame);
+        }
+        return frame;
+    }
+
+    ByteBuffer get(Message.Format format) {
+        if (format == Message.Format.DEFLATE) {
+            ByteBuffer frame = deflated;
+            if (frame == null) {
+                frame = BinaryCodec.deflate(get(Message.Format.BINARY), compressionLevel);
+                deflated = frame;
+            }
+            return frame;
+        }
+        if (format == Message.Format.BINARY) {
+            ByteBuffer frame = binary;
+            if (frame == null) {
+                frame = message.toFrame(Message.Format.BINARY);
+                binary = frame;
+            }
+            return frame;
+        }
+        ByteBuffer frame = text;
+        if (frame == null) {
+            frame = message.toFrame(Message.Format.TEXT);
+            text = frame;
+        }
+        return frame;
+    }
+}
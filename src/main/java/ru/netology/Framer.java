@@ -0,0 +1,26 @@
+package ru.netology;
+
+import ru.netology.common.Message;
+
+import java.nio.ByteBuffer;
+
+interface Framer {
+
+    boolean feed(ByteBuffer buffer, MessageConsumer consumer) throws FramingException;
+
+    interface MessageConsumer {
+        boolean accept(Message message);
+
+        default boolean admit(int bytes) {
+            return true;
+        }
+    }
+
+    class FramingException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        FramingException(String message) {
+            super(message);
+        }
+    }
+}
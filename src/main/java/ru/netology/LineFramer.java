@@ -0,0 +1,47 @@
+package ru.netology;
+
+import ru.netology.common.Message;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+class LineFramer implements Framer {
+    private static final int INITIAL_CAPACITY = 128;
+
+    private final int maxLineLength;
+    private byte[] line;
+    private int length;
+
+    LineFramer(int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+        this.line = new byte[0];
+    }
+
+    @Override
+    public boolean feed(ByteBuffer buffer, MessageConsumer consumer) throws FramingException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+                length = 0;
+                if (end > 0 && consumer.admit(end) && !consumer.accept(Message.parse(line, 0, end))) {
+                    return false;
+                }
+            } else {
+                append(b);
+            }
+        }
+        return true;
+    }
+
+    private void append(byte b) throws FramingException {
+        if (length == line.length) {
+            if (length >= maxLineLength) {
+                throw new FramingException("Строка длиннее " + maxLineLength + " байт");
+            }
+            int capacity = Math.min(maxLineLength, Math.max(INITIAL_CAPACITY, length * 2));
+            line = Arrays.copyOf(line, capacity);
+        }
+        line[length++] = b;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.netology;
+
+import ru.netology.common.Message;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+final class MessageHistory {
+    private final AtomicReferenceArray<Entry> slots;
+    private final int capacity;
+    private final long start;
+    private final AtomicLong next;
+
+    MessageHistory(int capacity) {
+        this(capacity, 0);
+    }
+
+    MessageHistory(int capacity, long start) {
+        this.capacity = capacity;
+        this.start = start;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+        this.next = new AtomicLong(start);
+    }
+
+    boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    long position() {
+        return next.get();
+    }
+
+    long oldest() {
+        return Math.max(start, next.get() - capacity);
+    }
+
+    void append(FrameCache frames) {
+        if (capacity == 0) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        frames.setHistoryPosition(sequence);
+        store(sequence, frames);
+    }
+
+    void append(long sequence, FrameCache frames) {
+        if (capacity == 0 || sequence < start) {
+            return;
+        }
+        next.accumulateAndGet(sequence + 1, Math::max);
+        store(sequence, frames);
+    }
+
+    private void store(long sequence, FrameCache frames) {
+        int index = (int) (sequence % capacity);
+        Entry entry = new Entry(sequence, frames);
+        while (true) {
+            Entry current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, entry)) {
+                return;
+            }
+        }
+    }
+
+    ByteBuffer replay(long until, Message.Format format) {
+        return replay(0, until, format, false);
+    }
+
+    ByteBuffer replay(long from, long until, Message.Format format, boolean withSequence) {
+        long first = Math.max(from, until - capacity);
+        if (capacity == 0 || until <= first) {
+            return null;
+        }
+        ByteBuffer[] frames = new ByteBuffer[(int) (until - first)];
+        int count = 0;
+        int size = 0;
+        for (long sequence = first; sequence < until; sequence++) {
+            Entry entry = slots.get((int) (sequence % capacity));
+            if (entry != null && entry.sequence == sequence) {
+                ByteBuffer frame = entry.frames.get(format, withSequence);
+                frames[count++] = frame;
+                size += frame.remaining();
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        for (int i = 0; i < count; i++) {
+            batch.put(frames[i].duplicate());
+        }
+        batch.flip();
+        return batch.asReadOnlyBuffer();
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final FrameCache frames;
+
+        private Entry(long sequence, FrameCache frames) {
+            this.sequence = sequence;
+            this.frames = frames;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ru.netology;
+
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class NioClientHandler extends ClientHandler {
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final EventLoop eventLoop;
+    private Framer framer;
+    private final AtomicBoolean flushScheduled;
+    private final ByteBuffer[] gather;
+    private final int batchBytes;
+    private final long delayMillis;
+    private int gatherOffset;
+    private int gatherCount;
+    private SelectionKey key;
+
+    NioClientHandler(SocketChannel channel, EventLoop eventLoop, ChatServer server) {
+        super(server);
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.flushScheduled = new AtomicBoolean();
+        this.gather = new ByteBuffer[MAX_GATHER];
+        this.batchBytes = server.getSettings().getWriteBatchBytes();
+        this.delayMillis = TimeUnit.MICROSECONDS.toMillis(server.getSettings().getWriteDelayMicros());
+        holdDeliveries();
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+        eventLoop.schedule(server.getSettings().getHandshakeMillis(), this::negotiationTimeout);
+    }
+
+    private void negotiationTimeout() {
+        if (framer == null && isConnected()) {
+            negotiate(Message.Format.TEXT);
+        }
+    }
+
+    private void negotiate(Message.Format format) {
+        if (format == Message.Format.BINARY) {
+            framer = new BinaryFramer(this::acceptHandshake);
+            return;
+        }
+        framer = new LineFramer(MAX_LINE_LENGTH);
+        negotiated(format);
+        flush();
+    }
+
+    private void acceptHandshake(boolean deflate) {
+        boolean accepted = deflate && server.getSettings().isCompressionEnabled();
+        gather[gatherCount++] = BinaryCodec.handshake(accepted);
+        negotiated(accepted ? Message.Format.DEFLATE : Message.Format.BINARY);
+        flush();
+    }
+
+    void onReadable(ByteBuffer buffer) {
+        buffer.clear();
+        try {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                disconnect();
+                return;
+            }
+            metrics.bytesIn(read);
+            markActive();
+            buffer.flip();
+            if (framer == null && buffer.hasRemaining()) {
+                boolean binary = BinaryCodec.isHandshakeStart(buffer.get(buffer.position()));
+                negotiate(binary ? Message.Format.BINARY : Message.Format.TEXT);
+            }
+            if (framer != null && !framer.feed(buffer, inbound)) {
+                disconnect();
+                return;
+            }
+            long delay = takeThrottleNanos();
+            if (delay > 0 && isConnected()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                eventLoop.schedule(Math.max(1, TimeUnit.NANOSECONDS.toMillis(delay)), this::resumeReading);
+            }
+        } catch (Framer.FramingException e) {
+            metrics.parseFailure();
+            if (isConnected()) {
+                System.err.println("Ошибка при обработке клиента: " + e.getMessage());
+            }
+            disconnect();
+        } catch (IOException e) {
+            if (isConnected()) {
+                System.err.println("Ошибка при обработке клиента: " + e.getMessage());
+            }
+            disconnect();
+        }
+    }
+
+    private void resumeReading() {
+        if (key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    @Override
+    protected void outboundReady() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            if (delayMillis > 0) {
+                eventLoop.schedule(delayMillis, this::flush);
+            } else {
+                eventLoop.execute(this::flush);
+            }
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        if (!isNegotiated()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (gatherOffset == gatherCount && !fillGather()) {
+                    break;
+                }
+                channel.write(gather, gatherOffset, gatherCount - gatherOffset);
+                metrics.writeCall();
+                while (gatherOffset < gatherCount && !gather[gatherOffset].hasRemaining()) {
+                    gather[gatherOffset++] = null;
+                }
+                if (gatherOffset < gatherCount) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            if (isConnected()) {
+                System.err.println("Ошибка при отправке клиенту: " + e.getMessage());
+            }
+            disconnect();
+        }
+    }
+
+    private boolean fillGather() {
+        gatherOffset = 0;
+        gatherCount = 0;
+        int bytes = 0;
+        ByteBuffer frame;
+        while (gatherCount < gather.length && bytes < batchBytes && (frame = pollOutbound()) != null) {
+            gather[gatherCount++] = frame.duplicate();
+            bytes += frame.remaining();
+        }
+        return gatherCount > 0;
+    }
+
+    @Override
+    protected void closeConnection() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
+        }
+    }
+}
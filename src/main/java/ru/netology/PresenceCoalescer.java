@@ -0,0 +1,153 @@
+package ru.netology;
+
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+final class PresenceCoalescer implements Runnable {
+    private final ChatServer server;
+    private final ServerMetrics metrics;
+    private final long windowMillis;
+    private final int threshold;
+    private final int maxNames;
+    private final BlockingQueue<Event> events;
+    private final List<Event> batch;
+    private final Thread thread;
+    private volatile boolean running;
+
+    PresenceCoalescer(ChatServer server, Settings settings, ServerMetrics metrics) {
+        this.server = server;
+        this.metrics = metrics;
+        this.windowMillis = settings.getPresenceWindowMillis();
+        this.threshold = settings.getPresenceThreshold();
+        this.maxNames = settings.getPresenceMaxNames();
+        this.events = new LinkedBlockingQueue<>();
+        this.batch = new ArrayList<>();
+        this.thread = new Thread(this, "presence");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    void joined(String username) {
+        events.add(new Event(username, true));
+    }
+
+    void left(String username) {
+        events.add(new Event(username, false));
+    }
+
+    static Message notice(String username, boolean joined) {
+        return new Message(Message.MessageType.SYSTEM, "SYSTEM",
+                username + (joined ? " присоединился к чату" : " покинул чат"));
+    }
+
+    static String list(String title, Collection<String> names, int max) {
+        StringBuilder text = new StringBuilder(title).append(" (").append(names.size()).append(")");
+        if (max == 0) {
+            return text.toString();
+        }
+        int listed = 0;
+        for (String name : names) {
+            if (listed == max) {
+                break;
+            }
+            text.append(listed == 0 ? ": " : ", ").append(name);
+            listed++;
+        }
+        if (listed < names.size()) {
+            text.append(" и ещё ").append(names.size() - listed);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                batch.add(events.take());
+                Thread.sleep(windowMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            events.drainTo(batch);
+            flush();
+            batch.clear();
+        }
+    }
+
+    private void flush() {
+        if (batch.size() < threshold) {
+            for (Event event : batch) {
+                server.broadcast(notice(event.username, event.joined));
+            }
+            return;
+        }
+
+        Map<String, Change> changes = new LinkedHashMap<>();
+        for (Event event : batch) {
+            Change change = changes.get(event.username);
+            if (change == null) {
+                changes.put(event.username, new Change(event.joined));
+            } else {
+                change.last = event.joined;
+            }
+        }
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (Map.Entry<String, Change> entry : changes.entrySet()) {
+            Change change = entry.getValue();
+            if (change.first == change.last) {
+                (change.first ? joined : left).add(entry.getKey());
+            }
+        }
+        metrics.presenceCoalesced(batch.size());
+        if (joined.isEmpty() && left.isEmpty()) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder();
+        if (!joined.isEmpty()) {
+            text.append(list("Присоединились к чату", joined, maxNames));
+        }
+        if (!left.isEmpty()) {
+            text.append(text.length() > 0 ? "; " : "").append(list("Покинули чат", left, maxNames));
+        }
+        server.broadcast(new Message(Message.MessageType.SYSTEM, "SYSTEM", text.toString()));
+    }
+
+    private static final class Event {
+        private final String username;
+        private final boolean joined;
+
+        private Event(String username, boolean joined) {
+            this.username = username;
+            this.joined = joined;
+        }
+    }
+
+    private static final class Change {
+        private final boolean first;
+        private boolean last;
+
+        private Change(boolean joined) {
+            this.first = joined;
+            this.last = joined;
+        }
+    }
+}
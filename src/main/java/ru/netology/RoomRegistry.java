@@ -0,0 +1,48 @@
+package ru.netology;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+class RoomRegistry {
+    private final ConcurrentMap<String, Set<ClientHandler>> rooms;
+
+    RoomRegistry() {
+        this.rooms = new ConcurrentHashMap<>();
+    }
+
+    boolean join(String room, ClientHandler client) {
+        boolean[] added = new boolean[1];
+        rooms.compute(room, (name, members) -> {
+            if (members == null) {
+                members = ConcurrentHashMap.newKeySet();
+            }
+            added[0] = members.add(client);
+            return members;
+        });
+        return added[0];
+    }
+
+    boolean leave(String room, ClientHandler client) {
+        boolean[] removed = new boolean[1];
+        rooms.computeIfPresent(room, (name, members) -> {
+            removed[0] = members.remove(client);
+            return members.isEmpty() ? null : members;
+        });
+        return removed[0];
+    }
+
+    Set<ClientHandler> members(String room) {
+        Set<ClientHandler> members = rooms.get(room);
+        return members != null ? members : Collections.emptySet();
+    }
+
+    boolean isMember(String room, ClientHandler client) {
+        return members(room).contains(client);
+    }
+
+    int size() {
+        return rooms.size();
+    }
+}
@@ -0,0 +1,170 @@
+package ru.netology;
+
+import ru.netology.common.LatencyHistogram;
+import ru.netology.common.Logger;
+import ru.netology.common.Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+final class ServerMetrics {
+    private static final long HIGHEST_LATENCY = TimeUnit.SECONDS.toNanos(10);
+
+    private final Metrics registry;
+    private final LongAdder connectionsOpened;
+    private final LongAdder connectionsClosed;
+    private final LongAdder messagesIn;
+    private final LongAdder messagesOut;
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+    private final LongAdder writeCalls;
+    private final LongAdder parseFailures;
+    private final LongAdder dropped;
+    private final LongAdder rateLimited;
+    private final LongAdder connectionsRejected;
+    private final LongAdder connectionsTimedOut;
+    private final LongAdder presenceCoalesced;
+    private final LongAdder sessionsResumed;
+    private final LongAdder sessionsReplayedBytes;
+    private final LongAdder searchQueries;
+    private final LongAdder relayedOut;
+    private final LongAdder relayedIn;
+    private final LongAdder relayDuplicates;
+    private final LongAdder relayDropped;
+    private final LongAdder relayBatches;
+    private final LatencyHistogram broadcastLatency;
+
+    ServerMetrics(Logger logger) {
+        this.registry = new Metrics();
+        this.connectionsOpened = registry.counter("connections.opened");
+        this.connectionsClosed = registry.counter("connections.closed");
+        this.messagesIn = registry.counter("messages.in");
+        this.messagesOut = registry.counter("messages.out");
+        this.bytesIn = registry.counter("bytes.in");
+        this.bytesOut = registry.counter("bytes.out");
+        this.writeCalls = registry.counter("write.calls");
+        this.parseFailures = registry.counter("messages.parse.failures");
+        this.dropped = registry.counter("messages.dropped");
+        this.rateLimited = registry.counter("messages.rate.limited");
+        this.connectionsRejected = registry.counter("connections.rejected");
+        this.connectionsTimedOut = registry.counter("connections.timed.out");
+        this.presenceCoalesced = registry.counter("presence.coalesced");
+        this.sessionsResumed = registry.counter("sessions.resumed");
+        this.sessionsReplayedBytes = registry.counter("sessions.replayed.bytes");
+        this.searchQueries = registry.counter("search.queries");
+        this.relayedOut = registry.counter("cluster.relayed.out");
+        this.relayedIn = registry.counter("cluster.relayed.in");
+        this.relayDuplicates = registry.counter("cluster.duplicates");
+        this.relayDropped = registry.counter("cluster.dropped");
+        this.relayBatches = registry.counter("cluster.batches");
+        this.broadcastLatency = new LatencyHistogram(HIGHEST_LATENCY);
+        registry.histogram("broadcast.nanos", broadcastLatency);
+        registry.histogram("log.write.nanos", logger.getWriteLatency());
+        registry.gauge("log.dropped", logger::getDroppedCount);
+    }
+
+    void watch(ChatServer server) {
+        registry.gauge("clients", server::getClientCount);
+        registry.gauge("rooms", server::getRoomCount);
+        registry.gauge("queue.depth.total", () -> {
+            long total = 0;
+            for (ClientHandler client : server.getClients()) {
+                total += client.getQueueDepth();
+            }
+            return total;
+        });
+        registry.gauge("queue.depth.max", () -> {
+            long max = 0;
+            for (ClientHandler client : server.getClients()) {
+                max = Math.max(max, client.getQueueDepth());
+            }
+            return max;
+        });
+        registry.gauge("timers", server::getTimerCount);
+        registry.gauge("sessions", server::getSessionCount);
+        registry.gauge("search.terms", server::getSearchTermCount);
+    }
+
+    Metrics getRegistry() {
+        return registry;
+    }
+
+    void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    void messageIn() {
+        messagesIn.increment();
+    }
+
+    void messageOut(int bytes) {
+        messagesOut.increment();
+        bytesOut.add(bytes);
+    }
+
+    void writeCall() {
+        writeCalls.increment();
+    }
+
+    void bytesIn(int bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void parseFailure() {
+        parseFailures.increment();
+    }
+
+    void messageDropped() {
+        dropped.increment();
+    }
+
+    void rateLimited() {
+        rateLimited.increment();
+    }
+
+    void connectionRejected() {
+        connectionsRejected.increment();
+    }
+
+    void connectionTimedOut() {
+        connectionsTimedOut.increment();
+    }
+
+    void presenceCoalesced(int events) {
+        presenceCoalesced.add(events);
+    }
+
+    void searchQuery() {
+        searchQueries.increment();
+    }
+
+    void sessionResumed(int replayedBytes) {
+        sessionsResumed.increment();
+        sessionsReplayedBytes.add(replayedBytes);
+    }
+
+    void broadcastTook(long nanos) {
+        broadcastLatency.record(nanos);
+    }
+
+    void relayOut(int messages) {
+        relayedOut.add(messages);
+        relayBatches.increment();
+    }
+
+    void relayIn() {
+        relayedIn.increment();
+    }
+
+    void relayDuplicate() {
+        relayDuplicates.increment();
+    }
+
+    void relayDropped() {
+        relayDropped.increment();
+    }
+}
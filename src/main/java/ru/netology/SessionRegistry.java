@@ -0,0 +1,196 @@
+package ru.netology;
+
+import ru.netology.common.Message;
+import ru.netology.common.MessageStore;
+import ru.netology.common.Settings;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+final class SessionRegistry {
+    private static final int TOKEN_BYTES = 16;
+    private static final int SWEEP_INTERVAL = 256;
+
+    private final MessageStore store;
+    private final MessageHistory window;
+    private final AtomicLong sequence;
+    private final ConcurrentMap<String, Session> sessions;
+    private final SecureRandom random;
+    private final ReentrantReadWriteLock lock;
+    private final AtomicInteger opened;
+    private final long ttlNanos;
+    private final int replayMax;
+    private final int compressionLevel;
+
+    SessionRegistry(Settings settings, MessageStore store) {
+        this.store = store;
+        long start = store != null ? store.getNextSequence() : 0;
+        this.window = new MessageHistory(settings.getSessionWindow(), start);
+        this.sequence = new AtomicLong(start);
+        this.sessions = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.lock = new ReentrantReadWriteLock();
+        this.opened = new AtomicInteger();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(settings.getSessionTtlMillis());
+        this.replayMax = settings.getSessionReplayMax();
+        this.compressionLevel = settings.getCompressionLevel();
+    }
+
+    Lock publishing() {
+        return lock.readLock();
+    }
+
+    Lock resuming() {
+        return lock.writeLock();
+    }
+
+    long assign(long stored) {
+        return store != null ? stored : sequence.getAndIncrement();
+    }
+
+    long position() {
+        return store != null ? store.getNextSequence() : sequence.get();
+    }
+
+    void append(FrameCache frames) {
+        if (frames.getSequence() >= 0) {
+            window.append(frames.getSequence(), frames);
+        }
+    }
+
+    Session open(String username, ClientHandler owner) {
+        if (opened.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sessions.values().removeIf(Session::isExpired);
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), username, owner);
+        sessions.put(session.token, session);
+        return session;
+    }
+
+    Session find(String token, String username) {
+        Session session = sessions.get(token);
+        if (session == null || !session.username.equals(username)) {
+            return null;
+        }
+        if (session.isExpired()) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session;
+    }
+
+    void close(Session session) {
+        sessions.remove(session.token, session);
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    long replayFrom(long after, long until) {
+        long from = Math.max(after + 1, until - replayMax);
+        return store != null ? from : Math.max(from, window.oldest());
+    }
+
+    ByteBuffer replay(long from, long until, Message.Format format) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        int size = 0;
+        long windowStart = Math.min(window.oldest(), until);
+        if (store != null && from < windowStart) {
+            for (MessageStore.Record record : store.readFrom(from, (int) (windowStart - from))) {
+                if (record.getSequence() >= windowStart) {
+                    break;
+                }
+                Message.MessageType type = record.getMessage().getType();
+                if (type == Message.MessageType.MESSAGE || type == Message.MessageType.SYSTEM) {
+                    ByteBuffer frame = new FrameCache(record.getMessage(), compressionLevel, record.getSequence())
+                            .get(format, true);
+                    frames.add(frame);
+                    size += frame.remaining();
+                }
+            }
+        }
+        ByteBuffer recent = window.replay(Math.max(from, windowStart), until, format, true);
+        if (recent != null) {
+            frames.add(recent);
+            size += recent.remaining();
+        }
+        if (frames.isEmpty()) {
+            return null;
+        }
+        if (frames.size() == 1) {
+            return frames.get(0);
+        }
+
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        for (ByteBuffer frame : frames) {
+            batch.put(frame.duplicate());
+        }
+        batch.flip();
+        return batch.asReadOnlyBuffer();
+    }
+
+    final class Session {
+        private final String token;
+        private final String username;
+        private final ReentrantLock lock;
+        private ClientHandler owner;
+        private long detachedAt;
+
+        private Session(String token, String username, ClientHandler owner) {
+            this.token = token;
+            this.username = username;
+            this.lock = new ReentrantLock();
+            this.owner = owner;
+        }
+
+        String getToken() {
+            return token;
+        }
+
+        ClientHandler attach(ClientHandler client) {
+            lock.lock();
+            try {
+                ClientHandler previous = owner;
+                owner = client;
+                return previous;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void detach(ClientHandler client) {
+            lock.lock();
+            try {
+                if (owner == client) {
+                    owner = null;
+                    detachedAt = System.nanoTime();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isExpired() {
+            lock.lock();
+            try {
+                return owner == null && System.nanoTime() - detachedAt > ttlNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
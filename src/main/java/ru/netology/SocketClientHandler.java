@@ -0,0 +1,206 @@
+package ru.netology;
+
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SocketClientHandler extends ClientHandler implements Runnable {
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final ThreadLocal<byte[]> BATCHES = new ThreadLocal<>();
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final AtomicBoolean writing;
+    private final int batchBytes;
+    private final long delayNanos;
+
+    public SocketClientHandler(Socket socket, ChatServer server) throws IOException {
+        super(server);
+        this.socket = socket;
+        this.in = new BufferedInputStream(new CountingInputStream(socket.getInputStream(), metrics));
+        this.out = socket.getOutputStream();
+        this.writing = new AtomicBoolean();
+        this.batchBytes = server.getSettings().getWriteBatchBytes();
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(server.getSettings().getWriteDelayMicros());
+        holdDeliveries();
+    }
+
+    @Override
+    public void run() {
+        try {
+            Message.Format format = detectFormat();
+            if (format == Message.Format.BINARY) {
+                format = acceptHandshake();
+            }
+            negotiated(format);
+            outboundReady();
+
+            if (format != Message.Format.TEXT) {
+                read(new BinaryFramer(true));
+            } else {
+                read(new LineFramer(MAX_LINE_LENGTH));
+            }
+        } catch (Framer.FramingException e) {
+            metrics.parseFailure();
+            if (isConnected()) {
+                System.err.println("Ошибка при обработке клиента: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (isConnected()) {
+                System.err.println("Ошибка при обработке клиента: " + e.getMessage());
+            }
+        } finally {
+            disconnect();
+        }
+    }
+
+    private Message.Format detectFormat() throws IOException {
+        socket.setSoTimeout(server.getSettings().getHandshakeMillis());
+        in.mark(1);
+        try {
+            int first = in.read();
+            in.reset();
+            return first >= 0 && BinaryCodec.isHandshakeStart((byte) first)
+                    ? Message.Format.BINARY
+                    : Message.Format.TEXT;
+        } catch (SocketTimeoutException e) {
+            return Message.Format.TEXT;
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    private Message.Format acceptHandshake() throws IOException {
+        byte[] handshake = in.readNBytes(BinaryCodec.handshakeLength());
+        if (handshake.length < BinaryCodec.handshakeLength() || !BinaryCodec.isHandshake(handshake, 0)) {
+            throw new IOException("Некорректное рукопожатие бинарного протокола");
+        }
+        boolean deflate = BinaryCodec.isDeflateHandshake(handshake, 0) && server.getSettings().isCompressionEnabled();
+        BinaryCodec.handshake(deflate).get(handshake);
+        out.write(handshake);
+        return deflate ? Message.Format.DEFLATE : Message.Format.BINARY;
+    }
+
+    private void read(Framer framer) throws IOException, Framer.FramingException, InterruptedException {
+        byte[] chunk = new byte[READ_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int read;
+        while (isConnected() && (read = in.read(chunk)) >= 0) {
+            markActive();
+            buffer.clear().limit(read);
+            if (!framer.feed(buffer, inbound)) {
+                return;
+            }
+            long delay = takeThrottleNanos();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        }
+    }
+
+    @Override
+    protected void outboundReady() {
+        if (isNegotiated() && writing.compareAndSet(false, true) && !server.write(this::drain)) {
+            writing.set(false);
+        }
+    }
+
+    private void drain() {
+        try {
+            do {
+                writeBatch();
+                writing.set(false);
+            } while (hasOutbound() && writing.compareAndSet(false, true));
+        } catch (IOException e) {
+            if (isConnected()) {
+                System.err.println("Ошибка при отправке клиенту: " + e.getMessage());
+            }
+            disconnect();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            disconnect();
+        }
+    }
+
+    private byte[] batch() {
+        byte[] batch = BATCHES.get();
+        if (batch == null || batch.length != batchBytes) {
+            batch = new byte[batchBytes];
+            BATCHES.set(batch);
+        }
+        return batch;
+    }
+
+    private void writeBatch() throws IOException, InterruptedException {
+        byte[] batch = batch();
+        ByteBuffer frame = pollOutbound();
+        long deadline = System.nanoTime() + delayNanos;
+        int length = 0;
+        while (frame != null) {
+            int size = frame.limit();
+            if (size > batch.length - length && length > 0) {
+                write(batch, length);
+                length = 0;
+            }
+            if (size > batch.length) {
+                writeLarge(frame, batch);
+            } else {
+                frame.get(0, batch, length, size);
+                length += size;
+            }
+            frame = nextFrame(deadline);
+        }
+        if (length > 0) {
+            write(batch, length);
+        }
+    }
+
+    private ByteBuffer nextFrame(long deadline) throws InterruptedException {
+        ByteBuffer frame = pollOutbound();
+        if (frame == null && isConnected()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                frame = pollOutbound(remaining);
+            }
+        }
+        return frame;
+    }
+
+    private void writeLarge(ByteBuffer frame, byte[] chunk) throws IOException {
+        int limit = frame.limit();
+        for (int offset = 0; offset < limit; offset += chunk.length) {
+            int length = Math.min(chunk.length, limit - offset);
+            frame.get(offset, chunk, 0, length);
+            write(chunk, length);
+        }
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        metrics.writeCall();
+    }
+
+    @Override
+    protected void closeConnection() {
+        try {
+            in.close();
+            out.close();
+            if (!socket.isClosed()) socket.close();
+        } catch (IOException e) {
+            System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ru.netology;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class TimingWheel implements Runnable {
+    private final long tickNanos;
+    private final Timeout[] slots;
+    private final int mask;
+    private final Queue<Timeout> pending;
+    private final Queue<Timeout> cancelled;
+    private final AtomicInteger size;
+    private final Thread thread;
+    private final long startTime;
+    private long tick;
+    private volatile boolean running;
+
+    TimingWheel(String name, long tickMillis, int slotCount) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int capacity = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.slots = new Timeout[capacity];
+        this.mask = capacity - 1;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.startTime = System.nanoTime();
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    Timeout schedule(long delayMillis, Runnable task) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(this, deadline, task);
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            long wakeUp = startTime + (tick + 1) * tickNanos;
+            long sleepNanos = wakeUp - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+            removeCancelled();
+            transferPending();
+            expire(slots[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            long due = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos);
+            timeout.rounds = (due - tick) / slots.length;
+            timeout.slot = (int) (due & mask);
+            link(timeout);
+            if (!timeout.state.compareAndSet(Timeout.PENDING, Timeout.SCHEDULED)) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.slot >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    private void expire(Timeout head) {
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                unlink(timeout);
+                if (timeout.state.compareAndSet(Timeout.SCHEDULED, Timeout.EXPIRED)) {
+                    size.decrementAndGet();
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Ошибка в таймере: " + e.getMessage());
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout) {
+        Timeout head = slots[timeout.slot];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[timeout.slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else if (slots[timeout.slot] == timeout) {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+
+    static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int SCHEDULED = 1;
+        private static final int CANCELLED = 2;
+        private static final int EXPIRED = 3;
+
+        private final TimingWheel wheel;
+        private final long deadline;
+        private final Runnable task;
+        private final AtomicInteger state;
+        private Timeout prev;
+        private Timeout next;
+        private long rounds;
+        private int slot;
+
+        private Timeout(TimingWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+            this.state = new AtomicInteger(PENDING);
+            this.slot = -1;
+        }
+
+        boolean cancel() {
+            int current = state.get();
+            while (current == PENDING || current == SCHEDULED) {
+                if (state.compareAndSet(current, CANCELLED)) {
+                    wheel.size.decrementAndGet();
+                    if (current == SCHEDULED) {
+                        wheel.cancelled.add(this);
+                    }
+                    return true;
+                }
+                current = state.get();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.netology;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class TokenBucket {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long nanosPerToken;
+    private final long tolerance;
+    private final AtomicLong arrival;
+
+    TokenBucket(long perSecond, long burst) {
+        this.nanosPerToken = Math.max(1, SECOND / Math.max(1, perSecond));
+        this.tolerance = nanosPerToken * Math.max(1, burst);
+        this.arrival = new AtomicLong(System.nanoTime() - tolerance);
+    }
+
+    boolean tryAcquire(long tokens, long now) {
+        long current;
+        long next;
+        do {
+            current = arrival.get();
+            next = Math.max(current, now - tolerance) + tokens * nanosPerToken;
+            if (next - now > 0) {
+                return false;
+            }
+        } while (!arrival.compareAndSet(current, next));
+        return true;
+    }
+
+    long acquire(long tokens, long now) {
+        long current;
+        long next;
+        do {
+            current = arrival.get();
+            next = Math.max(current, now - tolerance) + tokens * nanosPerToken;
+        } while (!arrival.compareAndSet(current, next));
+        return Math.max(0, next - now);
+    }
+}
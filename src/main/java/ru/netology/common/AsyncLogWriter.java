@@ -0,0 +1,211 @@
+package ru.netology.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+class AsyncLogWriter implements Runnable {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Path path;
+    private final LogRotator rotator;
+    private final LatencyHistogram writeLatency;
+    private final RingBuffer<Entry> ring;
+    private final int batchSize;
+    private final long batchNanos;
+    private final Logger.OverflowPolicy overflowPolicy;
+    private final boolean fsync;
+    private final ByteBuffer buffer;
+    private final LongAdder dropped;
+    private final Thread thread;
+    private volatile boolean running;
+    private long reportedDrops;
+    private long written;
+    private FileChannel channel;
+
+    static final class Entry {
+        final long time;
+        final String username;
+        final String message;
+
+        Entry(long time, String username, String message) {
+            this.time = time;
+            this.username = username;
+            this.message = message;
+        }
+    }
+
+    AsyncLogWriter(Path path, LogRotator rotator, LatencyHistogram writeLatency, Settings settings) {
+        this.path = path;
+        this.rotator = rotator;
+        this.writeLatency = writeLatency;
+        this.ring = new RingBuffer<>(settings.getLogBufferSize());
+        this.batchSize = settings.getLogBatchSize();
+        this.batchNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLogBatchMillis());
+        this.overflowPolicy = settings.getLogOverflowPolicy();
+        this.fsync = settings.isLogFsync();
+        this.buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        this.dropped = new LongAdder();
+        this.thread = new Thread(this, "log-writer");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    void append(String username, String message) {
+        Entry entry = new Entry(System.currentTimeMillis(), username, message);
+        if (ring.offer(entry)) {
+            if (ring.size() >= batchSize) {
+                LockSupport.unpark(thread);
+            }
+            return;
+        }
+        if (overflowPolicy == Logger.OverflowPolicy.BLOCK) {
+            while (running && !ring.offer(entry)) {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+            if (running) {
+                return;
+            }
+        }
+        dropped.increment();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!openChannel()) {
+            running = false;
+            return;
+        }
+
+        int pending = 0;
+        long batchStart = 0;
+        while (true) {
+            Entry entry;
+            while (pending < batchSize && (entry = ring.poll()) != null) {
+                encode(Logger.format(entry.time, entry.username, entry.message));
+                if (pending++ == 0) {
+                    batchStart = System.nanoTime();
+                }
+            }
+
+            boolean closing = !running;
+            long elapsed = System.nanoTime() - batchStart;
+            if (pending > 0 && (pending >= batchSize || closing || elapsed >= batchNanos)) {
+                commit();
+                pending = 0;
+                continue;
+            }
+            if (closing && ring.isEmpty()) {
+                break;
+            }
+            LockSupport.parkNanos(pending > 0 ? batchNanos - elapsed : batchNanos);
+        }
+        commit();
+        closeChannel();
+    }
+
+    private void encode(String line) {
+        byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            writeBuffer();
+        }
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private void commit() {
+        if (overflowPolicy == Logger.OverflowPolicy.COUNT) {
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                encode(Logger.format(System.currentTimeMillis(), null,
+                        "пропущено записей лога: " + (drops - reportedDrops)));
+                reportedDrops = drops;
+            }
+        }
+        long start = System.nanoTime();
+        writeBuffer();
+        if (fsync) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("Ошибка синхронизации лог-файла: " + e.getMessage());
+            }
+        }
+        writeLatency.record(System.nanoTime() - start);
+        if (rotator != null) {
+            long now = System.currentTimeMillis();
+            if (rotator.shouldRotate(written, now)) {
+                closeChannel();
+                rotator.rotate(now);
+                if (!openChannel()) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void writeBuffer() {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data) {
+        try {
+            while (data.hasRemaining()) {
+                written += channel.write(data);
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка записи в лог-файл: " + e.getMessage());
+        }
+    }
+
+    private boolean openChannel() {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            written = channel.size();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ошибка открытия лог-файла: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Ошибка закрытия лог-файла: " + e.getMessage());
+        }
+    }
+}
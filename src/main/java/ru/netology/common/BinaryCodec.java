@@ -0,0 +1,337 @@
+package ru.netology.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class BinaryCodec {
+    public static final byte VERSION = 1;
+    public static final byte DEFLATED = 2;
+    public static final int MAX_FRAME_LENGTH = 64 * 1024;
+    public static final int MIN_DEFLATE_LENGTH = 128;
+
+    private static final byte[] HANDSHAKE = {0, 'N', 'C', VERSION};
+    private static final byte[] DICTIONARY = ("SYSTEM покинул комнату вошёл в комнату"
+            + " покинул чат присоединился к чату Имя уже занято").getBytes(StandardCharsets.UTF_8);
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final long INCOMPLETE = -1;
+    private static final long NON_MINIMAL = -2;
+
+    private BinaryCodec() {
+    }
+
+    public static ByteBuffer handshake() {
+        return handshake(false);
+    }
+
+    public static ByteBuffer handshake(boolean deflate) {
+        byte[] handshake = HANDSHAKE.clone();
+        if (deflate) {
+            handshake[handshake.length - 1] = DEFLATED;
+        }
+        return ByteBuffer.wrap(handshake).asReadOnlyBuffer();
+    }
+
+    public static boolean isHandshakeStart(byte first) {
+        return first == HANDSHAKE[0];
+    }
+
+    public static int handshakeLength() {
+        return HANDSHAKE.length;
+    }
+
+    public static boolean isHandshake(byte[] bytes, int offset) {
+        for (int i = 0; i < HANDSHAKE.length - 1; i++) {
+            if (bytes[offset + i] != HANDSHAKE[i]) {
+                return false;
+            }
+        }
+        byte version = bytes[offset + HANDSHAKE.length - 1];
+        return version == VERSION || version == DEFLATED;
+    }
+
+    public static boolean isDeflateHandshake(byte[] bytes, int offset) {
+        return isHandshake(bytes, offset) && bytes[offset + HANDSHAKE.length - 1] == DEFLATED;
+    }
+
+    public static boolean isFrame(ByteBuffer frame) {
+        return frame.limit() > 0 && (frame.get(0) == VERSION || frame.get(0) == DEFLATED);
+    }
+
+    public static ByteBuffer deflate(ByteBuffer frame, int level) {
+        int length = frame.remaining();
+        if (length < MIN_DEFLATE_LENGTH) {
+            return frame;
+        }
+        byte[] raw = new byte[length];
+        frame.get(frame.position(), raw, 0, length);
+
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] compressed = new byte[length];
+        int size = 0;
+        while (!deflater.finished() && size < compressed.length) {
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+
+        int total = 1 + varintSize(length) + varintSize(size) + size;
+        if (!deflater.finished() || total >= length) {
+            return frame;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        buffer.put(DEFLATED);
+        putVarint(buffer, length);
+        putVarint(buffer, size);
+        buffer.put(compressed, 0, size);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer encode(Message message) {
+        byte[] username = message.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+
+        int size = 2 + varintSize(username.length) + varintSize(content.length)
+                + username.length + content.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) message.getType().ordinal());
+        putVarint(buffer, username.length);
+        putVarint(buffer, content.length);
+        buffer.put(username);
+        buffer.put(content);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public static Message read(InputStream in) throws IOException {
+        int version = in.read();
+        if (version < 0) {
+            return null;
+        }
+        if (version == DEFLATED) {
+            return inflate(in);
+        }
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия кадра: " + version);
+        }
+        Message.MessageType type = type(readByte(in));
+        int usernameLength = readVarint(in);
+        int contentLength = readVarint(in);
+        checkLength(usernameLength);
+        checkLength(contentLength);
+        checkLength((long) usernameLength + contentLength);
+
+        String username = new String(readFully(in, usernameLength), StandardCharsets.UTF_8);
+        String content = new String(readFully(in, contentLength), StandardCharsets.UTF_8);
+        return new Message(type, username, content);
+    }
+
+    public static int frameLength(byte[] bytes, int offset, int available) throws IOException {
+        if (available < 2) {
+            return -1;
+        }
+        if (bytes[offset] == DEFLATED) {
+            return deflatedLength(bytes, offset, available);
+        }
+        if (bytes[offset] != VERSION) {
+            throw new IOException("Неподдерживаемая версия кадра: " + bytes[offset]);
+        }
+        type(bytes[offset + 1]);
+
+        int position = offset + 2;
+        int end = offset + available;
+        long usernameLength = varintAt(bytes, position, end);
+        if (usernameLength == INCOMPLETE) {
+            return -1;
+        }
+        checkVarint(usernameLength);
+        position += varintSize((int) usernameLength);
+        long contentLength = varintAt(bytes, position, end);
+        if (contentLength == INCOMPLETE) {
+            return -1;
+        }
+        checkVarint(contentLength);
+        position += varintSize((int) contentLength);
+
+        long length = position - offset + usernameLength + contentLength;
+        checkLength(length);
+        return (int) length;
+    }
+
+    public static Message decode(byte[] bytes, int offset, int length) throws IOException {
+        if (bytes[offset] != DEFLATED) {
+            return decode(bytes, offset);
+        }
+        int position = offset + 1;
+        int rawLength = (int) varintAt(bytes, position, offset + length);
+        position += varintSize(rawLength);
+        int size = (int) varintAt(bytes, position, offset + length);
+        position += varintSize(size);
+        return inflate(bytes, position, size, rawLength);
+    }
+
+    public static Message decode(byte[] bytes, int offset) {
+        Message.MessageType type = Message.MessageType.byCode(bytes[offset + 1]);
+        int position = offset + 2;
+        int usernameLength = (int) varintAt(bytes, position, bytes.length);
+        position += varintSize(usernameLength);
+        int contentLength = (int) varintAt(bytes, position, bytes.length);
+        position += varintSize(contentLength);
+
+        String username = new String(bytes, position, usernameLength, StandardCharsets.UTF_8);
+        String content = new String(bytes, position + usernameLength, contentLength, StandardCharsets.UTF_8);
+        return new Message(type, username, content);
+    }
+
+    private static int deflatedLength(byte[] bytes, int offset, int available) throws IOException {
+        int position = offset + 1;
+        int end = offset + available;
+        long length = varintAt(bytes, position, end);
+        if (length == INCOMPLETE) {
+            return -1;
+        }
+        checkVarint(length);
+        position += varintSize((int) length);
+        long size = varintAt(bytes, position, end);
+        if (size == INCOMPLETE) {
+            return -1;
+        }
+        checkVarint(size);
+        position += varintSize((int) size);
+        return (int) (position - offset + size);
+    }
+
+    private static Message inflate(InputStream in) throws IOException {
+        int length = readVarint(in);
+        int size = readVarint(in);
+        checkLength(length);
+        checkLength(size);
+        return inflate(readFully(in, size), 0, size, length);
+    }
+
+    private static Message inflate(byte[] compressed, int offset, int size, int length) throws IOException {
+        if (length == 0) {
+            throw new IOException("Некорректный сжатый кадр");
+        }
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(compressed, offset, size);
+        byte[] raw = new byte[length];
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(raw, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || raw[0] != VERSION) {
+                throw new IOException("Некорректный сжатый кадр");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Некорректный сжатый кадр: " + e.getMessage());
+        }
+        if (frameLength(raw, 0, length) != length) {
+            throw new IOException("Некорректный сжатый кадр");
+        }
+        return decode(raw, 0);
+    }
+
+    private static Message.MessageType type(int code) throws IOException {
+        Message.MessageType type = Message.MessageType.byCode(code);
+        if (type == null) {
+            throw new IOException("Неизвестный тип кадра: " + code);
+        }
+        return type;
+    }
+
+    private static void checkVarint(long value) throws IOException {
+        if (value == NON_MINIMAL) {
+            throw new IOException("Некорректная длина в кадре");
+        }
+        checkLength(value);
+    }
+
+    private static void checkLength(long length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Кадр длиннее " + MAX_FRAME_LENGTH + " байт");
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new EOFException("Кадр оборван");
+        }
+        return value;
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Кадр оборван");
+        }
+        return bytes;
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (b == 0 && shift > 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Некорректная длина в кадре");
+    }
+
+    private static long varintAt(byte[] bytes, int position, int end) {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= end) {
+                return INCOMPLETE;
+            }
+            byte b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return b == 0 && shift > 0 ? NON_MINIMAL : value;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+}
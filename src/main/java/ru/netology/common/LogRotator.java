@@ -0,0 +1,175 @@
+package ru.netology.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+class LogRotator {
+    private static final DateTimeFormatter ARCHIVE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneId.systemDefault());
+    private static final int STAMP_LENGTH = "yyyyMMdd-HHmmss-SSS".length();
+
+    private final Path file;
+    private final Path directory;
+    private final long maxBytes;
+    private final long intervalMillis;
+    private final String archivePattern;
+    private final Pattern archiveMatcher;
+    private final Pattern stagingMatcher;
+    private final int maxArchives;
+    private final ExecutorService compressor;
+    private long nextRotation;
+
+    LogRotator(Path file, Settings settings) {
+        this.file = file;
+        this.directory = file.toAbsolutePath().getParent();
+        this.maxBytes = settings.getLogRotateBytes();
+        this.intervalMillis = settings.getLogRotateMillis();
+        this.archivePattern = settings.getLogArchivePattern();
+        this.archiveMatcher = Pattern.compile(Pattern.quote(archivePattern).replace("%s", "\\E(.+)\\Q"));
+        this.stagingMatcher = Pattern.compile(Pattern.quote(file.getFileName().toString()) + "\\.(\\d+)(-\\d+)?");
+        this.maxArchives = settings.getLogArchiveMax();
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "log-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.nextRotation = intervalMillis > 0 ? System.currentTimeMillis() + intervalMillis : Long.MAX_VALUE;
+        compressLeftovers();
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0 || intervalMillis > 0;
+    }
+
+    boolean shouldRotate(long size, long now) {
+        return size > 0 && ((maxBytes > 0 && size >= maxBytes) || now >= nextRotation);
+    }
+
+    void rotate(long now) {
+        if (intervalMillis > 0) {
+            nextRotation = now + intervalMillis;
+        }
+        Path staging = file.resolveSibling(file.getFileName() + "." + now);
+        for (int i = 1; Files.exists(staging); i++) {
+            staging = file.resolveSibling(file.getFileName() + "." + now + "-" + i);
+        }
+        Path staged = staging;
+        try {
+            Files.move(file, staging, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Ошибка ротации лог-файла: " + e.getMessage());
+            return;
+        }
+        compressor.execute(() -> compress(staged, now));
+    }
+
+    void close() {
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compress(Path staging, long time) {
+        Path archive = archivePath(time);
+        Path temporary = archive.resolveSibling(archive.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(staging);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Ошибка сжатия лог-файла: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temporary, archive, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(staging);
+            prune();
+        } catch (IOException e) {
+            System.err.println("Ошибка сжатия лог-файла: " + e.getMessage());
+        }
+    }
+
+    private Path archivePath(long time) {
+        String stamp = ARCHIVE_TIME_FORMATTER.format(Instant.ofEpochMilli(time));
+        Path archive = directory.resolve(String.format(archivePattern, stamp));
+        for (int i = 1; Files.exists(archive); i++) {
+            archive = directory.resolve(String.format(archivePattern, stamp + "-" + i));
+        }
+        return archive;
+    }
+
+    private void prune() throws IOException {
+        if (maxArchives <= 0) {
+            return;
+        }
+        List<Path> archives = list(archiveMatcher);
+        archives.sort(Comparator.comparing(this::archiveStamp).thenComparingLong(this::archiveIndex));
+        for (int i = 0; i < archives.size() - maxArchives; i++) {
+            Files.deleteIfExists(archives.get(i));
+        }
+    }
+
+    private void compressLeftovers() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            for (Path staging : list(stagingMatcher)) {
+                long time = Long.parseLong(group(stagingMatcher, staging));
+                compressor.execute(() -> compress(staging, time));
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ошибка поиска неупакованных логов: " + e.getMessage());
+        }
+    }
+
+    private String archiveStamp(Path path) {
+        String value = group(archiveMatcher, path);
+        return value.length() > STAMP_LENGTH ? value.substring(0, STAMP_LENGTH) : value;
+    }
+
+    private long archiveIndex(Path path) {
+        String value = group(archiveMatcher, path);
+        if (value.length() <= STAMP_LENGTH + 1) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.substring(STAMP_LENGTH + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String group(Pattern pattern, Path path) {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        return matcher.matches() ? matcher.group(1) : "";
+    }
+
+    private List<Path> list(Pattern matcher) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> matcher.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -3,31 +3,102 @@ package ru.netology.common;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Logger {
-    private static final String LOG_FILE = "file.log";
     private static final DateTimeFormatter DATE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public synchronized void log(String username, String message) {
-        String timestamp = LocalDateTime.now().format(DATE_FORMATTER);
-        String logEntry = String.format("[%s] %s: %s", timestamp, username, message);
-        writeToFile(logEntry);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Path file;
+    private final LogRotator rotator;
+    private final AsyncLogWriter asyncWriter;
+    private final LatencyHistogram writeLatency = new LatencyHistogram(TimeUnit.SECONDS.toNanos(10));
+
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP,
+        COUNT
+    }
+
+    public Logger() {
+        this.file = Path.of(Settings.DEFAULT_LOG_FILE);
+        this.rotator = null;
+        this.asyncWriter = null;
+    }
+
+    public Logger(Settings settings) {
+        this.file = Path.of(settings.getLogFile());
+        LogRotator logRotator = new LogRotator(file, settings);
+        this.rotator = logRotator.isEnabled() ? logRotator : null;
+        if (settings.isLogAsync()) {
+            this.asyncWriter = new AsyncLogWriter(file, rotator, writeLatency, settings);
+            this.asyncWriter.start();
+        } else {
+            this.asyncWriter = null;
+        }
+    }
+
+    public void log(String username, String message) {
+        if (asyncWriter != null) {
+            asyncWriter.append(username, message);
+            return;
+        }
+        writeToFile(format(System.currentTimeMillis(), username, message));
+    }
+
+    public void logSystem(String message) {
+        log(null, message);
+    }
+
+    public long getDroppedCount() {
+        return asyncWriter != null ? asyncWriter.getDroppedCount() : 0;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public void close() {
+        if (asyncWriter != null) {
+            asyncWriter.close();
+        }
+        if (rotator != null) {
+            rotator.close();
+        }
     }
 
-    public synchronized void logSystem(String message) {
-        String timestamp = LocalDateTime.now().format(DATE_FORMATTER);
-        String logEntry = String.format("[%s] SYSTEM: %s", timestamp, message);
-        writeToFile(logEntry);
+    static String format(long time, String username, String message) {
+        String timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())
+                .format(DATE_FORMATTER);
+        return String.format("[%s] %s: %s", timestamp, username != null ? username : "SYSTEM", message);
     }
 
     private void writeToFile(String logEntry) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE, true))) {
-            writer.println(logEntry);
+        lock.lock();
+        try {
+            if (rotator != null) {
+                long now = System.currentTimeMillis();
+                if (Files.exists(file) && rotator.shouldRotate(Files.size(file), now)) {
+                    rotator.rotate(now);
+                }
+            }
+            long start = System.nanoTime();
+            try (PrintWriter writer = new PrintWriter(new FileWriter(file.toFile(), true))) {
+                writer.println(logEntry);
+            }
+            writeLatency.record(System.nanoTime() - start);
         } catch (IOException e) {
             System.err.println("Ошибка записи в лог-файл: " + e.getMessage());
+        } finally {
+            lock.unlock();
         }
     }
 }
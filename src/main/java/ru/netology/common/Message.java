@@ -1,5 +1,10 @@
 package ru.netology.common;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
 public class Message {
     private final MessageType type;
     private final String username;
@@ -9,7 +14,65 @@ public class Message {
         JOIN,
         MESSAGE,
         EXIT,
-        SYSTEM
+        SYSTEM,
+        ROOM_JOIN,
+        ROOM_LEAVE,
+        ROOM_MESSAGE,
+        DIRECT,
+        PING,
+        PONG,
+        RESUME,
+        SESSION,
+        SEQ,
+        SEARCH;
+
+        private static final MessageType[] TYPES = values();
+        private static final byte[][] NAMES = new byte[TYPES.length][];
+
+        static {
+            for (int i = 0; i < TYPES.length; i++) {
+                NAMES[i] = TYPES[i].name().getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        public static MessageType byCode(int code) {
+            return code >= 0 && code < TYPES.length ? TYPES[code] : null;
+        }
+
+        static MessageType parse(CharSequence text, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < TYPES.length; i++) {
+                byte[] name = NAMES[i];
+                if (name.length != length) {
+                    continue;
+                }
+                int j = 0;
+                while (j < length && text.charAt(start + j) == name[j]) {
+                    j++;
+                }
+                if (j == length) {
+                    return TYPES[i];
+                }
+            }
+            return null;
+        }
+
+        static MessageType parse(byte[] bytes, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < TYPES.length; i++) {
+                byte[] name = NAMES[i];
+                if (name.length == length && Arrays.equals(bytes, start, end, name, 0, length)) {
+                    return TYPES[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Format {
+        TEXT,
+        BINARY,
+        DEFLATE
     }
 
     public Message(MessageType type, String username, String content) {
@@ -34,24 +97,88 @@ public class Message {
         return type.name() + ":" + username + ":" + content;
     }
 
+    public ByteBuffer toFrame() {
+        byte[] bytes = (serialize() + "\n").getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    public ByteBuffer toFrame(Format format) {
+        return toFrame(format, Deflater.BEST_SPEED);
+    }
+
+    public ByteBuffer toFrame(Format format, int compressionLevel) {
+        switch (format) {
+            case BINARY:
+                return BinaryCodec.encode(this);
+            case DEFLATE:
+                return BinaryCodec.deflate(BinaryCodec.encode(this), compressionLevel);
+            default:
+                return toFrame();
+        }
+    }
+
     public static Message deserialize(String line) {
-        if (line == null || line.trim().isEmpty()) {
+        if (line == null) {
+            return null;
+        }
+
+        int end = line.length();
+        int typeEnd = indexOf(line, ':', 0, end);
+        if (typeEnd < 0) {
+            return null;
+        }
+
+        MessageType type = MessageType.parse(line, 0, typeEnd);
+        if (type == null) {
             return null;
         }
 
-        String[] parts = line.split(":", 3);
-        if (parts.length < 2) {
+        int usernameEnd = indexOf(line, ':', typeEnd + 1, end);
+        if (usernameEnd < 0) {
+            return new Message(type, line.substring(typeEnd + 1), "");
+        }
+        return new Message(type, line.substring(typeEnd + 1, usernameEnd), line.substring(usernameEnd + 1));
+    }
+
+    public static Message parse(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int typeEnd = indexOf(bytes, (byte) ':', offset, end);
+        if (typeEnd < 0) {
             return null;
         }
 
-        try {
-            MessageType type = MessageType.valueOf(parts[0]);
-            String username = parts[1];
-            String content = parts.length > 2 ? parts[2] : "";
-            return new Message(type, username, content);
-        } catch (IllegalArgumentException e) {
+        MessageType type = MessageType.parse(bytes, offset, typeEnd);
+        if (type == null) {
             return null;
         }
+
+        int usernameEnd = indexOf(bytes, (byte) ':', typeEnd + 1, end);
+        if (usernameEnd < 0) {
+            return new Message(type, decode(bytes, typeEnd + 1, end), "");
+        }
+        return new Message(type, decode(bytes, typeEnd + 1, usernameEnd), decode(bytes, usernameEnd + 1, end));
+    }
+
+    private static int indexOf(String text, char delimiter, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, byte delimiter, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(byte[] bytes, int from, int to) {
+        return from == to ? "" : new String(bytes, from, to - from, StandardCharsets.UTF_8);
     }
 
     @Override
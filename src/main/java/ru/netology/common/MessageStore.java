@@ -0,0 +1,266 @@
+package ru.netology.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+public class MessageStore implements Closeable {
+    private static final int MAPPED_SEALED_SEGMENTS = 2;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final int maxSegments;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<StoreSegment> segments;
+    private final Deque<StoreSegment> mappedSealed;
+    private long lastTimestamp;
+    private long closedSequence;
+    private boolean closed;
+
+    public MessageStore(Settings settings) throws IOException {
+        this(Path.of(settings.getStoreDirectory()), settings.getStoreSegmentBytes(),
+                settings.getStoreIndexInterval(), settings.getStoreMaxSegments());
+    }
+
+    public MessageStore(Path directory, int segmentBytes, int indexInterval, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+        this.maxSegments = maxSegments;
+        this.segments = new ArrayList<>();
+        this.mappedSealed = new ArrayDeque<>();
+        Files.createDirectories(directory);
+        for (long baseSequence : existingSegments()) {
+            if (!segments.isEmpty()) {
+                active().seal();
+            }
+            segments.add(StoreSegment.open(directory, baseSequence, segmentBytes, indexInterval));
+        }
+        if (segments.isEmpty()) {
+            segments.add(StoreSegment.create(directory, 0, segmentBytes, indexInterval));
+        }
+        lastTimestamp = active().getLastTimestamp();
+    }
+
+    public long append(Message message) throws IOException {
+        ByteBuffer frame = BinaryCodec.encode(message);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Хранилище сообщений закрыто");
+            }
+            StoreSegment segment = active();
+            long sequence = segment.getNextSequence();
+            long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+            if (!segment.append(sequence, timestamp, frame)) {
+                segment = roll(sequence, frame.remaining());
+                segment.append(sequence, timestamp, frame);
+            }
+            lastTimestamp = timestamp;
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Record> readFrom(long sequence, int limit) {
+        List<Record> records = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = segmentFor(sequence); i < segments.size() && records.size() < limit; i++) {
+                StoreSegment segment = segments.get(i);
+                if (!map(segment)) {
+                    break;
+                }
+                segment.read(segment.positionOf(sequence), Long.MAX_VALUE, limit, records);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return records;
+    }
+
+    public List<Record> readBetween(long fromMillis, long toMillis, int limit) {
+        List<Record> records = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = segmentAt(fromMillis); i < segments.size() && records.size() < limit; i++) {
+                StoreSegment segment = segments.get(i);
+                if (!map(segment) || segment.read(segment.positionAt(fromMillis), toMillis, limit, records) < 0) {
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return records;
+    }
+
+    public int deleteBefore(long timestamp) throws IOException {
+        lock.lock();
+        try {
+            int deleted = 0;
+            while (segments.size() > 1 && segments.get(1).getFirstTimestamp() <= timestamp) {
+                delete(segments.remove(0));
+                deleted++;
+            }
+            return deleted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getNextSequence() {
+        lock.lock();
+        try {
+            return closed ? closedSequence : active().getNextSequence();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closedSequence = active().getNextSequence();
+            for (StoreSegment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            mappedSealed.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private StoreSegment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private StoreSegment roll(long baseSequence, int length) throws IOException {
+        StoreSegment current = active();
+        if (current.isEmpty()) {
+            segments.remove(segments.size() - 1).delete();
+        }
+        int capacity = StoreSegment.fits(segmentBytes, length)
+                ? segmentBytes
+                : StoreSegment.RECORD_HEADER + length;
+        StoreSegment segment = StoreSegment.create(directory, baseSequence, capacity, indexInterval);
+        if (!current.isEmpty()) {
+            current.seal();
+        }
+        segments.add(segment);
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            delete(segments.remove(0));
+        }
+        return segment;
+    }
+
+    private boolean map(StoreSegment segment) {
+        if (segment.isMapped()) {
+            return true;
+        }
+        try {
+            segment.map();
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать сегмент хранилища: " + e.getMessage());
+            return false;
+        }
+        mappedSealed.addLast(segment);
+        if (mappedSealed.size() > MAPPED_SEALED_SEGMENTS) {
+            mappedSealed.removeFirst().unmap();
+        }
+        return true;
+    }
+
+    private void delete(StoreSegment segment) throws IOException {
+        mappedSealed.remove(segment);
+        segment.delete();
+    }
+
+    private int segmentFor(long sequence) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).getBaseSequence() <= sequence) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int segmentAt(long timestamp) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).getFirstTimestamp() < timestamp) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("\\d{20}\\.log"))
+                    .sorted()
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, 20))));
+        }
+        return bases;
+    }
+
+    public static final class Record {
+        private final long sequence;
+        private final long timestamp;
+        private final Message message;
+
+        Record(long sequence, long timestamp, Message message) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package ru.netology.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class SearchIndex implements Closeable {
+    public static final String FILE_NAME = "search.idx";
+
+    private static final int MAGIC = 0x4E435358;
+    private static final int VERSION = 1;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int CATCH_UP_BATCH = 4096;
+    private static final int CATCH_UP_OVERLAP = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long[] NONE = new long[0];
+
+    private final Path file;
+    private final Map<String, Postings> postings;
+    private final ReentrantReadWriteLock lock;
+    private long nextSequence;
+    private long messages;
+
+    public SearchIndex() {
+        this(null);
+    }
+
+    private SearchIndex(Path file) {
+        this.file = file;
+        this.postings = new HashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    public static SearchIndex open(Path directory, MessageStore store) {
+        SearchIndex index = new SearchIndex(directory.resolve(FILE_NAME));
+        index.load();
+        index.catchUp(store);
+        return index;
+    }
+
+    public void add(long sequence, Message message) {
+        if (message.getType() != Message.MessageType.MESSAGE) {
+            return;
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        tokens.add("@" + message.getUsername().toLowerCase(Locale.ROOT));
+        tokenize(message.getContent(), tokens);
+
+        lock.writeLock().lock();
+        try {
+            boolean added = false;
+            for (String token : tokens) {
+                added |= postings.computeIfAbsent(token, key -> new Postings()).add(sequence);
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            if (added) {
+                messages++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long[] search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.startsWith("@") && word.length() > 1) {
+                terms.add(word.toLowerCase(Locale.ROOT));
+            } else {
+                tokenize(word, terms);
+            }
+        }
+        if (terms.isEmpty() || limit <= 0) {
+            return NONE;
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[terms.size()];
+            int i = 0;
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    return NONE;
+                }
+                lists[i++] = list;
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+            Postings shortest = lists[0];
+            long[] hits = new long[Math.min(limit, shortest.size)];
+            int found = 0;
+            for (int position = shortest.size - 1; position >= 0 && found < hits.length; position--) {
+                long sequence = shortest.values[position];
+                if (containsAll(lists, sequence)) {
+                    hits[found++] = sequence;
+                }
+            }
+            return found == hits.length ? hits : Arrays.copyOf(hits, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getMessageCount() {
+        lock.readLock().lock();
+        try {
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nextSequence);
+            out.writeLong(messages);
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                Postings list = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(list.size);
+                long previous = 0;
+                for (int i = 0; i < list.size; i++) {
+                    writeVarLong(out, list.values[i] - previous);
+                    previous = list.values[i];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        save();
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("неизвестный формат");
+            }
+            long budget = Files.size(file);
+            nextSequence = in.readLong();
+            messages = in.readLong();
+            int terms = in.readInt();
+            if (nextSequence < 0 || messages < 0 || terms < 0 || terms > budget) {
+                throw new IOException("некорректный заголовок");
+            }
+            for (int t = 0; t < terms; t++) {
+                String token = in.readUTF();
+                int size = in.readInt();
+                budget -= size;
+                if (size < 0 || budget < 0) {
+                    throw new IOException("некорректная длина списка");
+                }
+                Postings list = new Postings(size);
+                long value = 0;
+                for (int i = 0; i < size; i++) {
+                    long delta = readVarLong(in);
+                    if (delta < 0 || (i > 0 && delta == 0) || value + delta < value) {
+                        throw new IOException("нарушен порядок номеров");
+                    }
+                    value += delta;
+                    list.values[i] = value;
+                }
+                list.size = size;
+                postings.put(token, list);
+            }
+        } catch (IOException e) {
+            System.err.println("Индекс поиска повреждён и будет перестроен: " + e.getMessage());
+            reset();
+        }
+    }
+
+    private void catchUp(MessageStore store) {
+        if (nextSequence > store.getNextSequence()) {
+            System.err.println("Индекс поиска новее хранилища и будет перестроен");
+            reset();
+        }
+        long from = Math.max(0, nextSequence - CATCH_UP_OVERLAP);
+        List<MessageStore.Record> records;
+        while (!(records = store.readFrom(from, CATCH_UP_BATCH)).isEmpty()) {
+            for (MessageStore.Record record : records) {
+                add(record.getSequence(), record.getMessage());
+            }
+            from = records.get(records.size() - 1).getSequence() + 1;
+        }
+        nextSequence = Math.max(nextSequence, from);
+    }
+
+    private void reset() {
+        postings.clear();
+        nextSequence = 0;
+        messages = 0;
+    }
+
+    private static boolean containsAll(Postings[] lists, long sequence) {
+        for (int i = 1; i < lists.length; i++) {
+            if (Arrays.binarySearch(lists[i].values, 0, lists[i].size, sequence) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void tokenize(String text, Set<String> tokens) {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (token.length() < MAX_TOKEN_LENGTH) {
+                    token.appendCodePoint(Character.toLowerCase(codePoint));
+                }
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("слишком длинное число");
+    }
+
+    private static final class Postings {
+        private long[] values;
+        private int size;
+
+        private Postings() {
+            this(4);
+        }
+
+        private Postings(int capacity) {
+            this.values = new long[Math.max(4, capacity)];
+        }
+
+        private boolean add(long sequence) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size + (size >> 1));
+            }
+            int position = size;
+            while (position > 0 && values[position - 1] > sequence) {
+                values[position] = values[position - 1];
+                position--;
+            }
+            if (position > 0 && values[position - 1] == sequence) {
+                System.arraycopy(values, position + 1, values, position, size - position);
+                return false;
+            }
+            values[position] = sequence;
+            size++;
+            return true;
+        }
+    }
+}
@@ -2,19 +2,49 @@ package ru.netology.common;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.zip.Deflater;
 
 public class Settings {
     private static final String SETTINGS_FILE = "settings.txt";
     private static final int DEFAULT_PORT = 8080;
+    static final String DEFAULT_LOG_FILE = "file.log";
+    private static final String DEFAULT_LOG_ARCHIVE_PATTERN = "file-%s.log.gz";
 
     private final Properties properties;
 
+    public enum ServerMode {
+        THREADS,
+        VIRTUAL,
+        POOL,
+        NIO
+    }
+
+    public enum SlowConsumerPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        DISCONNECT
+    }
+
+    public enum RateLimitAction {
+        THROTTLE,
+        DROP,
+        DISCONNECT
+    }
+
     public Settings() throws IOException {
         properties = new Properties();
         loadSettings();
     }
 
+    public Settings(Properties properties) {
+        this.properties = properties;
+    }
+
     private void loadSettings() throws IOException {
         try (InputStream inputStream = getClass().getClassLoader()
                 .getResourceAsStream(SETTINGS_FILE)) {
@@ -35,8 +65,337 @@ public class Settings {
         }
     }
 
+    public ServerMode getServerMode() {
+        return getEnum("mode", ServerMode.class, ServerMode.THREADS);
+    }
+
+    public int getEventLoopThreads() {
+        int threads = getInt("nio.threads", 0);
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getPoolThreads() {
+        return getInt("pool.threads", 0);
+    }
+
+    public int getHandshakeMillis() {
+        return Math.max(1, getInt("protocol.handshake.millis", 200));
+    }
+
+    public boolean isCompressionEnabled() {
+        return getBoolean("compression.enabled", true);
+    }
+
+    public int getCompressionLevel() {
+        return Math.max(Deflater.DEFAULT_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION,
+                getInt("compression.level", Deflater.BEST_SPEED)));
+    }
+
+    public int getClientQueueCapacity() {
+        return Math.max(1, getInt("client.queue.capacity", 1024));
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return getEnum("client.queue.policy", SlowConsumerPolicy.class, SlowConsumerPolicy.DROP_OLDEST);
+    }
+
+    public int getMessageRate() {
+        return Math.max(0, getInt("client.rate.messages", 0));
+    }
+
+    public int getMessageBurst() {
+        int burst = getInt("client.rate.messages.burst", 0);
+        return burst > 0 ? burst : Math.max(1, getMessageRate());
+    }
+
+    public int getByteRate() {
+        return Math.max(0, getInt("client.rate.bytes", 0));
+    }
+
+    public int getByteBurst() {
+        int burst = getInt("client.rate.bytes.burst", 0);
+        return burst > 0 ? burst : Math.max(getByteRate(), BinaryCodec.MAX_FRAME_LENGTH);
+    }
+
+    public RateLimitAction getRateLimitAction() {
+        return getEnum("client.rate.action", RateLimitAction.class, RateLimitAction.THROTTLE);
+    }
+
+    public int getAcceptRate() {
+        return Math.max(0, getInt("accept.rate", 0));
+    }
+
+    public int getAcceptBurst() {
+        int burst = getInt("accept.burst", 0);
+        return burst > 0 ? burst : Math.max(1, getAcceptRate());
+    }
+
+    public int getAcceptThreads() {
+        return Math.max(1, getInt("accept.threads", 1));
+    }
+
+    public boolean isAcceptReusePort() {
+        return getBoolean("accept.reuseport", true);
+    }
+
+    public int getAcceptBacklog() {
+        return Math.max(0, getInt("accept.backlog", 0));
+    }
+
+    public long getHeartbeatIntervalMillis() {
+        return Math.max(0, getLong("heartbeat.interval.millis", 0));
+    }
+
+    public long getHeartbeatTimeoutMillis() {
+        long timeout = getLong("heartbeat.timeout.millis", 0);
+        return timeout > 0 ? timeout : getHeartbeatIntervalMillis();
+    }
+
+    public int getHeartbeatTickMillis() {
+        return Math.max(1, getInt("heartbeat.tick.millis", 100));
+    }
+
+    public int getPresenceWindowMillis() {
+        return Math.max(0, getInt("presence.window.millis", 0));
+    }
+
+    public int getPresenceThreshold() {
+        return Math.max(1, getInt("presence.threshold", 10));
+    }
+
+    public int getPresenceMaxNames() {
+        return Math.max(0, getInt("presence.names.max", 20));
+    }
+
+    public boolean isPresenceRoster() {
+        return getBoolean("presence.roster", false);
+    }
+
+    public int getPresenceRosterMax() {
+        return Math.max(1, getInt("presence.roster.max", 500));
+    }
+
+    public boolean isSessionResume() {
+        return getBoolean("session.resume", false);
+    }
+
+    public long getSessionTtlMillis() {
+        return Math.max(0, getLong("session.ttl.millis", 60000));
+    }
+
+    public int getSessionWindow() {
+        return Math.max(0, getInt("session.window", 1024));
+    }
+
+    public int getSessionReplayMax() {
+        return Math.max(1, getInt("session.replay.max", 10000));
+    }
+
+    public int getWriteBatchBytes() {
+        return Math.max(1024, getInt("client.write.batch.bytes", 64 * 1024));
+    }
+
+    public long getWriteDelayMicros() {
+        return Math.max(0, getLong("client.write.delay.micros", 0));
+    }
+
+    public int getBroadcastThreads() {
+        return Math.max(0, getInt("broadcast.threads", 0));
+    }
+
+    public int getBroadcastQueueCapacity() {
+        return Math.max(1, getInt("broadcast.queue.capacity", 1024));
+    }
+
+    public int getHistoryCapacity() {
+        return Math.max(0, getInt("history.capacity", 0));
+    }
+
+    public String getStoreDirectory() {
+        return properties.getProperty("store.dir", "").trim();
+    }
+
+    public int getStoreSegmentBytes() {
+        return Math.max(4096, getInt("store.segment.bytes", 16 * 1024 * 1024));
+    }
+
+    public int getStoreIndexInterval() {
+        return Math.max(1, getInt("store.index.bytes", 4096));
+    }
+
+    public int getStoreMaxSegments() {
+        return Math.max(0, getInt("store.segments.max", 0));
+    }
+
+    public boolean isSearchEnabled() {
+        return getBoolean("search.enabled", false);
+    }
+
+    public int getSearchResultsMax() {
+        return Math.max(1, getInt("search.results.max", 20));
+    }
+
+    public int getClusterPort() {
+        return Math.max(0, getInt("cluster.port", 0));
+    }
+
+    public String getClusterBind() {
+        return properties.getProperty("cluster.bind", "127.0.0.1").trim();
+    }
+
+    public String getClusterSecret() {
+        return properties.getProperty("cluster.secret", "");
+    }
+
+    public String getClusterNode() {
+        return properties.getProperty("cluster.node", "").trim();
+    }
+
+    public List<InetSocketAddress> getClusterPeers() {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : properties.getProperty("cluster.peers", "").split(",")) {
+            String value = peer.trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            int colon = value.lastIndexOf(':');
+            try {
+                if (colon <= 0) {
+                    throw new NumberFormatException();
+                }
+                int port = Integer.parseInt(value.substring(colon + 1));
+                peers.add(InetSocketAddress.createUnresolved(value.substring(0, colon), port));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Неверный адрес узла в cluster.peers: " + value + ". Пропускается");
+            }
+        }
+        return peers;
+    }
+
+    public int getClusterQueueCapacity() {
+        return Math.max(1, getInt("cluster.queue.capacity", 8192));
+    }
+
+    public int getClusterBatchSize() {
+        return Math.max(1, getInt("cluster.batch.size", 256));
+    }
+
+    public int getClusterReconnectMillis() {
+        return Math.max(10, getInt("cluster.reconnect.millis", 1000));
+    }
+
+    public int getAdminPort() {
+        return Math.max(0, getInt("admin.port", 0));
+    }
+
+    public boolean isMetricsJmx() {
+        return getBoolean("metrics.jmx", true);
+    }
+
+    public boolean isLogAsync() {
+        return getBoolean("log.async", true);
+    }
+
+    public int getLogBufferSize() {
+        return Math.max(2 * getLogBatchSize(), getInt("log.buffer", 8192));
+    }
+
+    public int getLogBatchSize() {
+        return Math.max(1, getInt("log.batch.size", 256));
+    }
+
+    public int getLogBatchMillis() {
+        return Math.max(1, getInt("log.batch.millis", 10));
+    }
+
+    public Logger.OverflowPolicy getLogOverflowPolicy() {
+        return getEnum("log.overflow", Logger.OverflowPolicy.class, Logger.OverflowPolicy.BLOCK);
+    }
+
+    public boolean isLogFsync() {
+        return getBoolean("log.fsync", false);
+    }
+
+    public String getLogFile() {
+        String value = properties.getProperty("log.file", "").trim();
+        return value.isEmpty() ? DEFAULT_LOG_FILE : value;
+    }
+
+    public long getLogRotateBytes() {
+        return Math.max(0, getLong("log.rotate.bytes", 0));
+    }
+
+    public long getLogRotateMillis() {
+        return Math.max(0, getLong("log.rotate.millis", 0));
+    }
+
+    public String getLogArchivePattern() {
+        String value = properties.getProperty("log.archive.pattern", "").trim();
+        if (value.isEmpty()) {
+            return DEFAULT_LOG_ARCHIVE_PATTERN;
+        }
+        if (!value.contains("%s") || value.indexOf("%s") != value.lastIndexOf("%s")
+                || value.replace("%s", "").contains("%")) {
+            System.err.println("Неверное значение log.archive.pattern: " + value
+                    + ". Используется: " + DEFAULT_LOG_ARCHIVE_PATTERN);
+            return DEFAULT_LOG_ARCHIVE_PATTERN;
+        }
+        return value;
+    }
+
+    public int getLogArchiveMax() {
+        return Math.max(0, getInt("log.archive.max", 10));
+    }
+
+    private boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Неверное значение " + key + ": " + value + ". Используется: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Неверное значение " + key + ": " + value + ". Используется: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Неверное значение " + key + ": " + value + ". Используется: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     @Override
     public String toString() {
-        return "Settings{port=" + getPort() + "}";
+        return "Settings{port=" + getPort() + ", mode=" + getServerMode() + "}";
     }
 }
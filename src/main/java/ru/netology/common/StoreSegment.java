@@ -0,0 +1,272 @@
+package ru.netology.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+final class StoreSegment {
+    static final int RECORD_HEADER = 20;
+    private static final int INDEX_ENTRY = 20;
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final long baseSequence;
+    private final int indexInterval;
+    private final FileChannel channel;
+    private final FileChannel indexChannel;
+    private final ByteBuffer indexEntry;
+    private MappedByteBuffer mapped;
+    private boolean sealed;
+    private int size;
+    private long nextSequence;
+    private long[] indexSequences;
+    private long[] indexTimestamps;
+    private int[] indexPositions;
+    private int indexCount;
+
+    private StoreSegment(Path directory, long baseSequence, int capacity, int indexInterval, boolean create)
+            throws IOException {
+        this.logPath = directory.resolve(fileName(baseSequence, ".log"));
+        this.indexPath = directory.resolve(fileName(baseSequence, ".idx"));
+        this.baseSequence = baseSequence;
+        this.indexInterval = indexInterval;
+        this.channel = FileChannel.open(logPath, create
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE});
+        this.indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexEntry = ByteBuffer.allocate(INDEX_ENTRY);
+        this.indexSequences = new long[16];
+        this.indexTimestamps = new long[16];
+        this.indexPositions = new int[16];
+        this.nextSequence = baseSequence;
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+    }
+
+    static StoreSegment create(Path directory, long baseSequence, int capacity, int indexInterval) throws IOException {
+        return new StoreSegment(directory, baseSequence, capacity, indexInterval, true);
+    }
+
+    static StoreSegment open(Path directory, long baseSequence, int capacity, int indexInterval) throws IOException {
+        StoreSegment segment = new StoreSegment(directory, baseSequence, capacity, indexInterval, false);
+        segment.recover();
+        return segment;
+    }
+
+    static String fileName(long baseSequence, String extension) {
+        return String.format("%020d%s", baseSequence, extension);
+    }
+
+    static boolean fits(int capacity, int length) {
+        return RECORD_HEADER + length <= capacity;
+    }
+
+    boolean append(long sequence, long timestamp, ByteBuffer frame) throws IOException {
+        int length = frame.remaining();
+        if (size + RECORD_HEADER + length > mapped.capacity()) {
+            return false;
+        }
+        if (indexCount == 0 || size - indexPositions[indexCount - 1] >= indexInterval) {
+            addIndexEntry(sequence, timestamp, size, true);
+        }
+        mapped.putLong(size + 4, sequence);
+        mapped.putLong(size + 12, timestamp);
+        mapped.put(size + RECORD_HEADER, frame, frame.position(), length);
+        mapped.putInt(size, RECORD_HEADER + length);
+        size += RECORD_HEADER + length;
+        nextSequence = sequence + 1;
+        return true;
+    }
+
+    int positionOf(long sequence) {
+        if (sequence <= baseSequence || indexCount == 0) {
+            return 0;
+        }
+        int entry = floor(indexSequences, sequence);
+        int position = indexPositions[entry];
+        while (position < size && mapped.getLong(position + 4) < sequence) {
+            position += mapped.getInt(position);
+        }
+        return position;
+    }
+
+    int positionAt(long timestamp) {
+        if (indexCount == 0 || timestamp <= indexTimestamps[0]) {
+            return 0;
+        }
+        int entry = floor(indexTimestamps, timestamp - 1);
+        int position = indexPositions[entry];
+        while (position < size && mapped.getLong(position + 12) < timestamp) {
+            position += mapped.getInt(position);
+        }
+        return position;
+    }
+
+    int read(int position, long untilTimestamp, int limit, List<MessageStore.Record> out) {
+        while (position < size && out.size() < limit) {
+            int length = mapped.getInt(position);
+            long timestamp = mapped.getLong(position + 12);
+            if (timestamp >= untilTimestamp) {
+                return -1;
+            }
+            byte[] payload = new byte[length - RECORD_HEADER];
+            mapped.get(position + RECORD_HEADER, payload);
+            out.add(new MessageStore.Record(mapped.getLong(position + 4), timestamp, BinaryCodec.decode(payload, 0)));
+            position += length;
+        }
+        return position;
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    long getNextSequence() {
+        return nextSequence;
+    }
+
+    long getFirstTimestamp() {
+        return indexCount > 0 ? indexTimestamps[0] : Long.MAX_VALUE;
+    }
+
+    long getLastTimestamp() {
+        if (indexCount == 0) {
+            return Long.MIN_VALUE;
+        }
+        long timestamp = indexTimestamps[indexCount - 1];
+        for (int position = indexPositions[indexCount - 1]; position < size; position += mapped.getInt(position)) {
+            timestamp = mapped.getLong(position + 12);
+        }
+        return timestamp;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void flush() {
+        mapped.force();
+    }
+
+    void seal() throws IOException {
+        mapped.force();
+        sealed = true;
+        mapped = null;
+        channel.close();
+        indexChannel.close();
+    }
+
+    boolean isMapped() {
+        return mapped != null;
+    }
+
+    void map() throws IOException {
+        if (mapped == null) {
+            try (FileChannel reader = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                mapped = reader.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+    }
+
+    void unmap() {
+        if (sealed) {
+            mapped = null;
+        }
+    }
+
+    void close() throws IOException {
+        if (!sealed) {
+            mapped.force();
+        }
+        mapped = null;
+        channel.close();
+        indexChannel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        indexChannel.close();
+        mapped = null;
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    private void recover() throws IOException {
+        long entries = indexChannel.size() / INDEX_ENTRY;
+        indexChannel.truncate(entries * INDEX_ENTRY);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (entries * INDEX_ENTRY));
+        while (buffer.hasRemaining() && indexChannel.read(buffer, buffer.position()) >= 0) {
+        }
+        buffer.flip();
+        while (buffer.remaining() >= INDEX_ENTRY) {
+            long sequence = buffer.getLong();
+            long timestamp = buffer.getLong();
+            int position = buffer.getInt();
+            if (position < 0 || position + RECORD_HEADER > mapped.capacity()
+                    || (indexCount > 0 && position <= indexPositions[indexCount - 1])
+                    || mapped.getLong(position + 4) != sequence) {
+                break;
+            }
+            addIndexEntry(sequence, timestamp, position, false);
+        }
+        indexChannel.truncate((long) indexCount * INDEX_ENTRY);
+        indexChannel.position(indexChannel.size());
+
+        int position = indexCount > 0 ? indexPositions[indexCount - 1] : 0;
+        while (position + RECORD_HEADER <= mapped.capacity()) {
+            int length = mapped.getInt(position);
+            if (length < RECORD_HEADER || position + length > mapped.capacity()) {
+                break;
+            }
+            long sequence = mapped.getLong(position + 4);
+            long timestamp = mapped.getLong(position + 12);
+            if (indexCount == 0 || position - indexPositions[indexCount - 1] >= indexInterval) {
+                addIndexEntry(sequence, timestamp, position, true);
+            }
+            nextSequence = sequence + 1;
+            position += length;
+        }
+        size = position;
+    }
+
+    private void addIndexEntry(long sequence, long timestamp, int position, boolean persist) throws IOException {
+        if (indexCount == indexPositions.length) {
+            int capacity = indexCount * 2;
+            indexSequences = Arrays.copyOf(indexSequences, capacity);
+            indexTimestamps = Arrays.copyOf(indexTimestamps, capacity);
+            indexPositions = Arrays.copyOf(indexPositions, capacity);
+        }
+        indexSequences[indexCount] = sequence;
+        indexTimestamps[indexCount] = timestamp;
+        indexPositions[indexCount] = position;
+        indexCount++;
+
+        if (persist) {
+            indexEntry.clear();
+            indexEntry.putLong(sequence).putLong(timestamp).putInt(position).flip();
+            while (indexEntry.hasRemaining()) {
+                indexChannel.write(indexEntry);
+            }
+        }
+    }
+
+    private int floor(long[] keys, long key) {
+        int low = 0;
+        int high = indexCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,218 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryProtocolTest {
+    private static final int TEST_PORT = 8085;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Бинарный кадр переносит двоеточия и переводы строк")
+    void testCodecRoundTrip() throws IOException {
+        Message message = new Message(Message.MessageType.MESSAGE, "user:name", "строка 1\nстрока 2: ок");
+        ByteBuffer frame = BinaryCodec.encode(message);
+
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        Message restored = BinaryCodec.read(new ByteArrayInputStream(bytes));
+
+        assertEquals(message.getType(), restored.getType());
+        assertEquals(message.getUsername(), restored.getUsername());
+        assertEquals(message.getContent(), restored.getContent());
+        assertEquals(bytes.length, BinaryCodec.frameLength(bytes, 0, bytes.length), "Размер кадра известен заранее");
+    }
+
+    @Test
+    @DisplayName("BinaryFramer собирает кадры, пришедшие по одному байту")
+    void testFramerHandlesPartialFrames() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(bytes(BinaryCodec.handshake()));
+        stream.write(bytes(BinaryCodec.encode(new Message(Message.MessageType.JOIN, "A", ""))));
+        stream.write(bytes(BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "A", "x".repeat(300)))));
+
+        BinaryFramer framer = new BinaryFramer();
+        List<Message> received = new ArrayList<>();
+        for (byte b : stream.toByteArray()) {
+            framer.feed(ByteBuffer.wrap(new byte[]{b}), received::add);
+        }
+
+        assertEquals(2, received.size());
+        assertEquals(Message.MessageType.JOIN, received.get(0).getType());
+        assertEquals(300, received.get(1).getContent().length());
+    }
+
+    @Test
+    @DisplayName("Длина в неминимальной записи varint отклоняется, а не сдвигает поток")
+    void testNonMinimalVarintRejected() {
+        byte type = (byte) Message.MessageType.MESSAGE.ordinal();
+        byte[] frame = {BinaryCodec.VERSION, type, (byte) 0x80, 0x00, 0x01, 'x'};
+
+        assertThrows(IOException.class, () -> BinaryCodec.frameLength(frame, 0, frame.length));
+        assertThrows(IOException.class, () -> BinaryCodec.read(new ByteArrayInputStream(frame)));
+        BinaryFramer framer = new BinaryFramer(true);
+        assertThrows(Framer.FramingException.class, () -> framer.feed(ByteBuffer.wrap(frame), message -> true));
+    }
+
+    @Test
+    @DisplayName("Бинарный и текстовый клиенты общаются через сервер (threads)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testMixedClientsThreads() throws Exception {
+        testMixedClients("threads");
+    }
+
+    @Test
+    @DisplayName("Бинарный и текстовый клиенты общаются через сервер (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testMixedClientsNio() throws Exception {
+        testMixedClients("nio");
+    }
+
+    private void testMixedClients(String mode) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        try (Socket binary = new Socket(TEST_HOST, TEST_PORT)) {
+            OutputStream binaryOut = binary.getOutputStream();
+            InputStream binaryIn = new BufferedInputStream(binary.getInputStream());
+            binaryOut.write(bytes(BinaryCodec.handshake()));
+            binaryOut.write(bytes(BinaryCodec.encode(new Message(Message.MessageType.JOIN, "Bin:ary", ""))));
+            binaryOut.flush();
+
+            byte[] ack = binaryIn.readNBytes(BinaryCodec.handshakeLength());
+            assertTrue(BinaryCodec.isHandshake(ack, 0), "Сервер должен подтвердить бинарный протокол");
+            assertTrue(BinaryCodec.read(binaryIn).getContent().contains("Bin:ary"));
+
+            try (Socket text = new Socket(TEST_HOST, TEST_PORT)) {
+                PrintWriter textOut = new PrintWriter(new OutputStreamWriter(text.getOutputStream(), StandardCharsets.UTF_8), true);
+                BufferedReader textIn = new BufferedReader(new InputStreamReader(text.getInputStream(), StandardCharsets.UTF_8));
+                textOut.println(new Message(Message.MessageType.JOIN, "Text", "").serialize());
+                textIn.readLine();
+                assertTrue(BinaryCodec.read(binaryIn).getContent().contains("Text"));
+
+                binaryOut.write(bytes(BinaryCodec.encode(
+                        new Message(Message.MessageType.MESSAGE, "Bin:ary", "две\nстроки"))));
+                binaryOut.flush();
+
+                Message echoed = BinaryCodec.read(binaryIn);
+                assertEquals("Bin:ary", echoed.getUsername());
+                assertEquals("две\nстроки", echoed.getContent());
+
+                assertEquals("MESSAGE:Bin:ary:две", textIn.readLine(), "Текстовый клиент получает текстовый кадр");
+            }
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    @Test
+    @DisplayName("Молчащий текстовый клиент получает отложенную рассылку после рукопожатия (threads)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testSilentTextClientThreads() throws Exception {
+        testSilentTextClient("threads");
+    }
+
+    @Test
+    @DisplayName("Молчащий текстовый клиент получает отложенную рассылку после рукопожатия (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testSilentTextClientNio() throws Exception {
+        testSilentTextClient("nio");
+    }
+
+    private void testSilentTextClient(String mode) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        properties.setProperty("protocol.handshake.millis", "300");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        try (Socket silent = new Socket(TEST_HOST, TEST_PORT);
+             Socket talker = new Socket(TEST_HOST, TEST_PORT)) {
+            BufferedReader silentIn = new BufferedReader(new InputStreamReader(silent.getInputStream(), StandardCharsets.UTF_8));
+            while (server.getClientCount() < 2) {
+                Thread.sleep(10);
+            }
+            PrintWriter talkerOut = new PrintWriter(new OutputStreamWriter(talker.getOutputStream(), StandardCharsets.UTF_8), true);
+            talkerOut.println(new Message(Message.MessageType.JOIN, "Talker", "").serialize());
+
+            assertEquals("SYSTEM:SYSTEM:Talker присоединился к чату", silentIn.readLine());
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    @Test
+    @DisplayName("Рассылка до рукопожатия не переводит бинарного клиента на текст (threads)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testLateHandshakeThreads() throws Exception {
+        testLateHandshake("threads");
+    }
+
+    @Test
+    @DisplayName("Рассылка до рукопожатия не переводит бинарного клиента на текст (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testLateHandshakeNio() throws Exception {
+        testLateHandshake("nio");
+    }
+
+    private void testLateHandshake(String mode) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        properties.setProperty("protocol.handshake.millis", "5000");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        try (Socket binary = new Socket(TEST_HOST, TEST_PORT);
+             Socket talker = new Socket(TEST_HOST, TEST_PORT)) {
+            while (server.getClientCount() < 2) {
+                Thread.sleep(10);
+            }
+            PrintWriter talkerOut = new PrintWriter(new OutputStreamWriter(talker.getOutputStream(), StandardCharsets.UTF_8), true);
+            BufferedReader talkerIn = new BufferedReader(new InputStreamReader(talker.getInputStream(), StandardCharsets.UTF_8));
+            talkerOut.println(new Message(Message.MessageType.JOIN, "Talker", "").serialize());
+            talkerIn.readLine();
+
+            OutputStream binaryOut = binary.getOutputStream();
+            InputStream binaryIn = new BufferedInputStream(binary.getInputStream());
+            binaryOut.write(bytes(BinaryCodec.handshake()));
+            binaryOut.flush();
+
+            byte[] ack = binaryIn.readNBytes(BinaryCodec.handshakeLength());
+            assertTrue(BinaryCodec.isHandshake(ack, 0), "Сервер должен подтвердить бинарный протокол");
+            Message held = BinaryCodec.read(binaryIn);
+            assertEquals("Talker присоединился к чату", held.getContent(), "Отложенная рассылка приходит бинарным кадром");
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,173 @@
+package ru.netology;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientHandlerTest {
+    private static final int TEST_PORT = 8084;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private final List<ChatServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (ChatServer server : servers) {
+            server.stop();
+        }
+        new File(LOG_FILE).delete();
+    }
+
+    @Test
+    @DisplayName("drop_oldest вытесняет самые старые сообщения")
+    void testDropOldest() {
+        ClientHandler client = new QueueOnlyClient(server("drop_oldest", 4));
+        for (int i = 0; i < 10; i++) {
+            client.sendMessage(message(i));
+        }
+
+        assertEquals(4, client.getQueueDepth());
+        assertEquals(6, client.getDroppedCount());
+        assertEquals("6", content(client.pollOutbound()));
+    }
+
+    @Test
+    @DisplayName("drop_newest отбрасывает новые сообщения")
+    void testDropNewest() {
+        ClientHandler client = new QueueOnlyClient(server("drop_newest", 4));
+        for (int i = 0; i < 10; i++) {
+            client.sendMessage(message(i));
+        }
+
+        assertEquals(4, client.getQueueDepth());
+        assertEquals(6, client.getDroppedCount());
+        assertEquals("0", content(client.pollOutbound()));
+    }
+
+    @Test
+    @DisplayName("disconnect отключает медленного клиента")
+    void testDisconnectSlowConsumer() {
+        ClientHandler client = new QueueOnlyClient(server("disconnect", 4));
+        for (int i = 0; i < 5; i++) {
+            client.sendMessage(message(i));
+        }
+
+        assertFalse(client.isConnected(), "Клиент должен быть отключён");
+        assertEquals(1, client.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("Клиент, который не читает, не задерживает рассылку остальным")
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void testSlowConsumerDoesNotStallOthers() throws Exception {
+        ChatServer server = server("drop_oldest", 64);
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        int messageCount = 2000;
+        String payload = "x".repeat(8 * 1024);
+
+        try (Socket slow = new Socket(TEST_HOST, TEST_PORT);
+             Socket fast = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter slowOut = new PrintWriter(slow.getOutputStream(), true);
+            slowOut.println(new Message(Message.MessageType.JOIN, "Slow", "").serialize());
+            Thread.sleep(200);
+
+            PrintWriter fastOut = new PrintWriter(fast.getOutputStream(), true);
+            BufferedReader fastIn = new BufferedReader(new InputStreamReader(fast.getInputStream()));
+            fastOut.println(new Message(Message.MessageType.JOIN, "Fast", "").serialize());
+            fastIn.readLine();
+
+            Thread sender = new Thread(() -> {
+                for (int i = 0; i < messageCount; i++) {
+                    fastOut.println(new Message(Message.MessageType.MESSAGE, "Fast", payload).serialize());
+                }
+            });
+            sender.start();
+
+            for (int i = 0; i < messageCount; i++) {
+                assertNotNull(fastIn.readLine(), "Быстрый клиент должен получить все сообщения");
+            }
+            sender.join();
+
+            ClientHandler slowHandler = server.getClients().stream()
+                    .filter(c -> "Slow".equals(c.getUsername()))
+                    .findFirst()
+                    .orElseThrow();
+            assertTrue(slowHandler.getDroppedCount() > 0, "Медленному клиенту сообщения должны отбрасываться");
+            assertTrue(slowHandler.getQueueDepth() <= 64, "Очередь не должна превышать лимит");
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private ChatServer server(String policy, int capacity) {
+        Properties properties = new Properties();
+        properties.setProperty("client.queue.policy", policy);
+        properties.setProperty("client.queue.capacity", String.valueOf(capacity));
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        servers.add(server);
+        return server;
+    }
+
+    @Test
+    @DisplayName("Рассылка кодирует сообщение один раз и отдаёт всем один буфер")
+    void testBroadcastSharesEncodedFrame() {
+        ChatServer server = server("drop_oldest", 4);
+        QueueOnlyClient first = new QueueOnlyClient(server);
+        QueueOnlyClient second = new QueueOnlyClient(server);
+        server.addClient(first);
+        server.addClient(second);
+
+        try {
+            server.broadcast(message(1));
+
+            ByteBuffer firstFrame = first.pollOutbound();
+            ByteBuffer secondFrame = second.pollOutbound();
+            assertSame(firstFrame, secondFrame);
+            assertTrue(firstFrame.isReadOnly(), "Общий буфер должен быть только для чтения");
+            assertEquals("1", content(firstFrame));
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private String content(ByteBuffer frame) {
+        return Message.deserialize(StandardCharsets.UTF_8.decode(frame.duplicate()).toString().trim()).getContent();
+    }
+
+    private Message message(int i) {
+        return new Message(Message.MessageType.MESSAGE, "User", String.valueOf(i));
+    }
+
+    private static class QueueOnlyClient extends ClientHandler {
+        QueueOnlyClient(ChatServer server) {
+            super(server);
+        }
+
+        @Override
+        protected void closeConnection() {
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ru.netology;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterTest {
+    private static final int[] CHAT_PORTS = {8094, 8095, 8096};
+    private static final int[] CLUSTER_PORTS = {8097, 8098, 8099};
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private final ChatServer[] nodes = new ChatServer[CHAT_PORTS.length];
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        for (int i = 0; i < nodes.length; i++) {
+            StringBuilder peers = new StringBuilder();
+            for (int j = 0; j < CLUSTER_PORTS.length; j++) {
+                if (j != i) {
+                    peers.append(peers.length() > 0 ? "," : "").append("127.0.0.1:").append(CLUSTER_PORTS[j]);
+                }
+            }
+            Properties properties = new Properties();
+            properties.setProperty("cluster.port", String.valueOf(CLUSTER_PORTS[i]));
+            properties.setProperty("cluster.node", "node" + i);
+            properties.setProperty("cluster.peers", peers.toString());
+            properties.setProperty("cluster.reconnect.millis", "50");
+            properties.setProperty("metrics.jmx", "false");
+            nodes[i] = new ChatServer(CHAT_PORTS[i], new Settings(properties));
+            new Thread(nodes[i]::start).start();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (ChatServer node : nodes) {
+            while (node.getConnectedPeers() < nodes.length - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(nodes.length - 1, node.getConnectedPeers());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (ChatServer node : nodes) {
+            node.stop();
+        }
+        new File(LOG_FILE).delete();
+    }
+
+    @Test
+    @DisplayName("Сообщения и сообщения комнат доходят до клиентов на других узлах")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testMessagesCrossNodes() throws IOException {
+        try (Client alice = new Client(CHAT_PORTS[0], "Alice");
+             Client bob = new Client(CHAT_PORTS[1], "Bob");
+             Client carol = new Client(CHAT_PORTS[2], "Carol")) {
+            bob.send(Message.MessageType.ROOM_JOIN, "general");
+            carol.send(Message.MessageType.ROOM_JOIN, "general");
+            bob.await("ROOM_MESSAGE", "Bob вошёл");
+            carol.await("ROOM_MESSAGE", "Carol вошёл");
+
+            alice.send(Message.MessageType.MESSAGE, "привет всем");
+            assertEquals("MESSAGE:Alice:привет всем", bob.await("MESSAGE", "привет всем"));
+            assertEquals("MESSAGE:Alice:привет всем", carol.await("MESSAGE", "привет всем"));
+
+            carol.send(Message.MessageType.ROOM_MESSAGE, "general:только для комнаты");
+            assertTrue(bob.await("ROOM_MESSAGE", "только для комнаты").startsWith("ROOM_MESSAGE:Carol:"));
+
+            alice.send(Message.MessageType.MESSAGE, "маркер");
+            assertEquals("MESSAGE:Alice:маркер", carol.await("MESSAGE", "маркер"));
+            assertFalse(alice.seen.toString().contains("только для комнаты"));
+        }
+    }
+
+    @Test
+    @DisplayName("Повторно переданные сообщения узла отбрасываются по номеру")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testDuplicateRelaysAreDropped() throws IOException {
+        try (Client alice = new Client(CHAT_PORTS[0], "Alice");
+             Socket peer = new Socket(TEST_HOST, CLUSTER_PORTS[0])) {
+            DataOutputStream out = handshake(peer, "fake@1", "");
+            long[] numbers = {1, 2, 2, 1, 3};
+            for (long number : numbers) {
+                out.writeLong(number);
+                out.writeUTF("");
+                ByteBuffer frame = BinaryCodec.encode(
+                        new Message(Message.MessageType.MESSAGE, "Remote", "n" + number));
+                byte[] bytes = new byte[frame.remaining()];
+                frame.get(bytes);
+                out.write(bytes);
+            }
+            out.flush();
+
+            assertEquals("MESSAGE:Remote:n1", alice.await("MESSAGE", "n1"));
+            assertEquals("MESSAGE:Remote:n2", alice.await("MESSAGE", "n2"));
+            assertEquals("MESSAGE:Remote:n3", alice.await("MESSAGE", "n3"));
+            assertEquals(2, (long) nodes[0].getMetricsRegistry().snapshot().get("cluster.duplicates"));
+            assertEquals(3, (long) nodes[0].getMetricsRegistry().snapshot().get("cluster.relayed.in"));
+        }
+    }
+
+    @Test
+    @DisplayName("Узел с неверным секретом отключается, его сообщения не доставляются")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testWrongSecretRejected() throws IOException {
+        try (Client alice = new Client(CHAT_PORTS[0], "Alice");
+             Socket peer = new Socket(TEST_HOST, CLUSTER_PORTS[0])) {
+            DataOutputStream out = handshake(peer, "intruder@1", "чужой секрет");
+            out.writeLong(1);
+            out.writeUTF("");
+            ByteBuffer frame = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "Remote", "подмена"));
+            byte[] bytes = new byte[frame.remaining()];
+            frame.get(bytes);
+            out.write(bytes);
+            out.flush();
+
+            int next;
+            try {
+                next = peer.getInputStream().read();
+            } catch (SocketException e) {
+                next = -1;
+            }
+            assertEquals(-1, next, "Узел должен закрыть соединение");
+            alice.send(Message.MessageType.MESSAGE, "маркер");
+            alice.await("MESSAGE", "маркер");
+            assertFalse(alice.seen.toString().contains("подмена"));
+            assertEquals(0, (long) nodes[0].getMetricsRegistry().snapshot().get("cluster.relayed.in"));
+        }
+    }
+
+    private static DataOutputStream handshake(Socket peer, String origin, String secret) throws IOException {
+        byte[] nonce = new DataInputStream(peer.getInputStream()).readNBytes(16);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(peer.getOutputStream()));
+        out.writeInt(0x4E43524C);
+        out.writeUTF(origin);
+        out.write(ClusterRelay.prove(secret, nonce, origin));
+        return out;
+    }
+
+    private static class Client implements AutoCloseable {
+        private final String username;
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+        private final StringBuilder seen = new StringBuilder();
+
+        Client(int port, String username) throws IOException {
+            this.username = username;
+            socket = new Socket(TEST_HOST, port);
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            send(Message.MessageType.JOIN, "");
+        }
+
+        void send(Message.MessageType type, String content) {
+            out.println(new Message(type, username, content).serialize());
+        }
+
+        String await(String type, String text) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                seen.append(line).append('\n');
+                if (line.startsWith(type + ":") && line.contains(text)) {
+                    return line;
+                }
+            }
+            fail("Соединение закрыто до получения " + text);
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
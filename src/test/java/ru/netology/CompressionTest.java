@@ -0,0 +1,172 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.BinaryCodec;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+    private static final int TEST_PORT = 8100;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+    private static final String LONG_TEXT = "Длинное сообщение, которое повторяется. ".repeat(50);
+
+    @Test
+    @DisplayName("Сжатый кадр восстанавливается, короткий кадр не сжимается")
+    void testDeflateRoundTrip() throws IOException {
+        Message message = new Message(Message.MessageType.MESSAGE, "Alice", LONG_TEXT);
+        ByteBuffer plain = BinaryCodec.encode(message);
+        ByteBuffer deflated = BinaryCodec.deflate(plain, 6);
+
+        assertEquals(BinaryCodec.DEFLATED, deflated.get(0));
+        assertTrue(deflated.remaining() < plain.remaining() / 4, "Повторяющийся текст должен хорошо сжиматься");
+        Message restored = BinaryCodec.read(new ByteArrayInputStream(bytes(deflated)));
+        assertEquals("Alice", restored.getUsername());
+        assertEquals(LONG_TEXT, restored.getContent());
+
+        ByteBuffer shortFrame = BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "Bob", "привет"));
+        assertSame(shortFrame, BinaryCodec.deflate(shortFrame, 6));
+    }
+
+    @Test
+    @DisplayName("BinaryFramer принимает сжатые кадры клиента, пришедшие по одному байту")
+    void testFramerAcceptsDeflatedFrames() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(bytes(BinaryCodec.handshake(true)));
+        stream.write(bytes(BinaryCodec.deflate(
+                BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "Zip", LONG_TEXT)), 6)));
+        stream.write(bytes(BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "Zip", "коротко"))));
+
+        BinaryFramer framer = new BinaryFramer();
+        List<Message> received = new ArrayList<>();
+        for (byte b : stream.toByteArray()) {
+            framer.feed(ByteBuffer.wrap(new byte[]{b}), received::add);
+        }
+
+        assertEquals(2, received.size());
+        assertEquals(LONG_TEXT, received.get(0).getContent());
+        assertEquals("коротко", received.get(1).getContent());
+    }
+
+    @Test
+    @DisplayName("Сжатый кадр рассылки создаётся один раз для всех получателей")
+    void testDeflatedFrameIsShared() {
+        FrameCache frames = new FrameCache(new Message(Message.MessageType.MESSAGE, "Alice", LONG_TEXT));
+        assertSame(frames.get(Message.Format.DEFLATE), frames.get(Message.Format.DEFLATE));
+    }
+
+    @Test
+    @DisplayName("Клиент со сжатием и обычные клиенты общаются через сервер (threads)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testNegotiatedThreads() throws Exception {
+        testNegotiated("threads", true);
+    }
+
+    @Test
+    @DisplayName("Клиент со сжатием и обычные клиенты общаются через сервер (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testNegotiatedNio() throws Exception {
+        testNegotiated("nio", true);
+    }
+
+    @Test
+    @DisplayName("Если сжатие выключено, сервер подтверждает обычный бинарный протокол")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testCompressionDisabled() throws Exception {
+        testNegotiated("nio", false);
+    }
+
+    private void testNegotiated(String mode, boolean enabled) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        properties.setProperty("compression.enabled", String.valueOf(enabled));
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        try (Socket deflateSocket = new Socket(TEST_HOST, TEST_PORT);
+             Socket textSocket = new Socket(TEST_HOST, TEST_PORT)) {
+            OutputStream deflateOut = deflateSocket.getOutputStream();
+            CountingStream deflateIn = new CountingStream(deflateSocket.getInputStream());
+            deflateOut.write(bytes(BinaryCodec.handshake(true)));
+            byte[] ack = deflateIn.readNBytes(BinaryCodec.handshakeLength());
+            assertTrue(BinaryCodec.isHandshake(ack, 0));
+            assertEquals(enabled, BinaryCodec.isDeflateHandshake(ack, 0));
+            deflateOut.write(bytes(BinaryCodec.encode(new Message(Message.MessageType.JOIN, "Zip", ""))));
+            assertTrue(BinaryCodec.read(deflateIn).getContent().contains("Zip"));
+
+            PrintWriter textOut = new PrintWriter(new OutputStreamWriter(textSocket.getOutputStream(), StandardCharsets.UTF_8), true);
+            BufferedReader textIn = new BufferedReader(new InputStreamReader(textSocket.getInputStream(), StandardCharsets.UTF_8));
+            textOut.println(new Message(Message.MessageType.JOIN, "Text", "").serialize());
+            assertTrue(BinaryCodec.read(deflateIn).getContent().contains("Text"));
+
+            long before = deflateIn.count;
+            textOut.println(new Message(Message.MessageType.MESSAGE, "Text", LONG_TEXT).serialize());
+            Message received = BinaryCodec.read(deflateIn);
+            assertEquals(LONG_TEXT, received.getContent());
+            int plainLength = BinaryCodec.encode(received).remaining();
+            if (enabled) {
+                assertTrue(deflateIn.count - before < plainLength / 4, "Сообщение должно прийти сжатым");
+            } else {
+                assertEquals(plainLength, deflateIn.count - before);
+            }
+            String line;
+            while ((line = textIn.readLine()) != null && line.startsWith("SYSTEM:")) {
+            }
+            assertEquals("MESSAGE:Text:" + LONG_TEXT, line, "Текстовый клиент получает обычный кадр");
+
+            deflateOut.write(bytes(BinaryCodec.deflate(
+                    BinaryCodec.encode(new Message(Message.MessageType.MESSAGE, "Zip", "сжато: " + LONG_TEXT)), 6)));
+            assertEquals("MESSAGE:Zip:сжато: " + LONG_TEXT, textIn.readLine(), "Сервер принимает сжатые кадры клиента");
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static class CountingStream extends FilterInputStream {
+        private long count;
+
+        CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
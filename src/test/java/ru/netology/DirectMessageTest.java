@@ -0,0 +1,110 @@
+package ru.netology;
+
+import org.junit.jupiter.api.*;
+import ru.netology.common.Message;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectMessageTest {
+    private static final int TEST_PORT = 8087;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private ChatServer server;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        server = new ChatServer(TEST_PORT);
+        new Thread(() -> server.start()).start();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+
+    @Test
+    @DisplayName("Личное сообщение получает только адресат")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testDirectMessageReachesOnlyRecipient() throws IOException {
+        try (Socket alice = new Socket(TEST_HOST, TEST_PORT);
+             Socket bob = new Socket(TEST_HOST, TEST_PORT);
+             Socket carol = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter aliceOut = join(alice, "Alice");
+            BufferedReader aliceIn = reader(alice);
+            join(bob, "Bob");
+            BufferedReader bobIn = reader(bob);
+            join(carol, "Carol");
+            BufferedReader carolIn = reader(carol);
+            readUntil(aliceIn, "Carol присоединился");
+            readUntil(bobIn, "Carol присоединился");
+            readUntil(carolIn, "Carol присоединился");
+
+            aliceOut.println(new Message(Message.MessageType.DIRECT, "Alice", "Bob:привет, Bob").serialize());
+            aliceOut.println(new Message(Message.MessageType.MESSAGE, "Alice", "marker").serialize());
+
+            assertEquals("DIRECT:Alice:Bob:привет, Bob", readUntil(bobIn, "DIRECT"));
+            assertEquals("DIRECT:Alice:Bob:привет, Bob", readUntil(aliceIn, "DIRECT"), "Отправитель получает копию");
+            assertFalse(readUntil(carolIn, "marker").contains("DIRECT"));
+        }
+    }
+
+    @Test
+    @DisplayName("Повторное имя отклоняется, освобождается после отключения")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testDuplicateUsernameRejected() throws IOException, InterruptedException {
+        try (Socket first = new Socket(TEST_HOST, TEST_PORT)) {
+            join(first, "Alice");
+            readUntil(reader(first), "Alice присоединился");
+
+            try (Socket second = new Socket(TEST_HOST, TEST_PORT)) {
+                join(second, "Alice");
+                assertEquals("SYSTEM:SYSTEM:Имя Alice уже занято", reader(second).readLine());
+            }
+        }
+
+        Thread.sleep(200);
+        assertNull(server.findClient("Alice"), "Имя должно освободиться после отключения");
+    }
+
+    @Test
+    @DisplayName("Сообщение несуществующему пользователю возвращает ошибку")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testUnknownRecipient() throws IOException {
+        try (Socket alice = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter out = join(alice, "Alice");
+            BufferedReader in = reader(alice);
+            readUntil(in, "Alice присоединился");
+
+            out.println(new Message(Message.MessageType.DIRECT, "Alice", "Nobody:эй").serialize());
+            assertEquals("SYSTEM:SYSTEM:Пользователь не найден: Nobody", in.readLine());
+        }
+    }
+
+    private PrintWriter join(Socket socket, String username) throws IOException {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        out.println(new Message(Message.MessageType.JOIN, username, "").serialize());
+        return out;
+    }
+
+    private BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream()));
+    }
+
+    private String readUntil(BufferedReader in, String fragment) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.contains(fragment)) {
+                return line;
+            }
+        }
+        fail("Соединение закрыто до получения: " + fragment);
+        return null;
+    }
+}
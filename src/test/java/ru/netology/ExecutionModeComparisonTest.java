@@ -0,0 +1,103 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionModeComparisonTest {
+    private static final int TEST_PORT = 8083;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+    private static final int CLIENT_COUNT = 2000;
+    private static final int ACCEPT_BATCH = 40;
+
+    @Test
+    @DisplayName("Сравнение потоков и памяти в режимах threads / virtual / nio")
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void testCompareExecutionModes() throws Exception {
+        long[] threads = measure(Settings.ServerMode.THREADS);
+        long[] virtual = measure(Settings.ServerMode.VIRTUAL);
+        long[] nio = measure(Settings.ServerMode.NIO);
+
+        System.out.printf("%-8s %10s %12s%n", "режим", "потоков", "куча, КБ");
+        System.out.printf("%-8s %10d %12d%n", "threads", threads[0], threads[1] / 1024);
+        System.out.printf("%-8s %10d %12d%n", "virtual", virtual[0], virtual[1] / 1024);
+        System.out.printf("%-8s %10d %12d%n", "nio", nio[0], nio[1] / 1024);
+
+        assertTrue(threads[0] >= CLIENT_COUNT, "В режиме threads на каждого клиента создаётся поток");
+        assertTrue(nio[0] < CLIENT_COUNT / 100, "В режиме nio число потоков не зависит от числа клиентов");
+        if (ClientExecutors.isVirtualThreadsSupported()) {
+            assertTrue(virtual[0] < CLIENT_COUNT / 10, "Виртуальные потоки не должны занимать платформенные потоки");
+        }
+    }
+
+    private long[] measure(Settings.ServerMode mode) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode.name());
+        properties.setProperty("nio.threads", "2");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+
+        long threadsBefore = threadCount();
+        long heapBefore = usedHeap();
+
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < CLIENT_COUNT; i++) {
+                sockets.add(new Socket(TEST_HOST, TEST_PORT));
+                if (sockets.size() % ACCEPT_BATCH == 0) {
+                    awaitClients(server, sockets.size());
+                }
+            }
+            awaitClients(server, CLIENT_COUNT);
+            Thread.sleep(200);
+            assertEquals(CLIENT_COUNT, server.getClientCount());
+
+            return new long[]{threadCount() - threadsBefore, usedHeap() - heapBefore};
+        } finally {
+            for (Socket socket : sockets) {
+                close(socket);
+            }
+            server.stop();
+            new File(LOG_FILE).delete();
+            Thread.sleep(1000);
+        }
+    }
+
+    private void awaitClients(ChatServer server, int count) throws InterruptedException {
+        while (server.getClientCount() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    private long threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    private long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FanoutTest {
+    private static final int TEST_PORT = 8093;
+    private static final String LOG_FILE = "file.log";
+    private static final int CLIENTS = 1000;
+    private static final int PER_SENDER = 300;
+
+    @Test
+    @DisplayName("Параллельная рассылка доставляет всё и сохраняет порядок каждого отправителя")
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void testParallelBroadcastKeepsPerSenderOrder() throws InterruptedException {
+        ChatServer server = server();
+        try {
+            List<RecordingClient> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                RecordingClient client = new RecordingClient(server);
+                server.addClient(client);
+                clients.add(client);
+            }
+
+            Thread[] senders = new Thread[2];
+            for (int s = 0; s < senders.length; s++) {
+                String sender = "Sender" + s;
+                senders[s] = new Thread(() -> {
+                    for (int i = 0; i < PER_SENDER; i++) {
+                        server.broadcast(new Message(Message.MessageType.MESSAGE, sender, String.valueOf(i)));
+                    }
+                });
+            }
+            for (Thread sender : senders) sender.start();
+            for (Thread sender : senders) sender.join();
+
+            for (RecordingClient client : clients) {
+                client.await(senders.length * PER_SENDER);
+                int[] next = new int[senders.length];
+                for (String line : client.lines) {
+                    String[] parts = line.trim().split(":");
+                    int sender = parts[1].charAt(parts[1].length() - 1) - '0';
+                    assertEquals(next[sender]++, Integer.parseInt(parts[2]), "Нарушен порядок сообщений " + parts[1]);
+                }
+            }
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    @Test
+    @DisplayName("Параллельная рассылка в комнату доходит только до участников")
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void testParallelRoomBroadcast() throws InterruptedException {
+        ChatServer server = server();
+        try {
+            List<RecordingClient> members = new ArrayList<>();
+            List<RecordingClient> others = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                RecordingClient client = new RecordingClient(server);
+                server.addClient(client);
+                if (i % 2 == 0) {
+                    server.joinRoom("general", client);
+                    members.add(client);
+                } else {
+                    others.add(client);
+                }
+            }
+
+            for (int i = 0; i < 50; i++) {
+                server.broadcastToRoom("general", new Message(Message.MessageType.ROOM_MESSAGE, "Alice", "general:" + i));
+            }
+            server.broadcast(new Message(Message.MessageType.MESSAGE, "Alice", "marker"));
+
+            for (RecordingClient member : members) {
+                member.await(51);
+                assertEquals("ROOM_MESSAGE:Alice:general:0", member.lines.peek().trim());
+            }
+            for (RecordingClient other : others) {
+                other.await(1);
+                assertEquals(List.of("MESSAGE:Alice:marker\n"), new ArrayList<>(other.lines));
+            }
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    @Test
+    @DisplayName("Переполненная очередь потока рассылки задерживает отправителя без потери сообщений")
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void testBoundedLaneQueue() throws InterruptedException {
+        ChatServer server = server("1");
+        try {
+            List<RecordingClient> clients = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                RecordingClient client = new RecordingClient(server);
+                server.addClient(client);
+                clients.add(client);
+            }
+
+            for (int i = 0; i < 200; i++) {
+                server.broadcast(new Message(Message.MessageType.MESSAGE, "Alice", String.valueOf(i)));
+            }
+
+            for (RecordingClient client : clients) {
+                client.await(200);
+                int expected = 0;
+                for (String line : client.lines) {
+                    assertEquals("MESSAGE:Alice:" + expected++, line.trim());
+                }
+            }
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private ChatServer server() {
+        return server("1024");
+    }
+
+    private ChatServer server(String queueCapacity) {
+        Properties properties = new Properties();
+        properties.setProperty("broadcast.threads", "4");
+        properties.setProperty("broadcast.queue.capacity", queueCapacity);
+        properties.setProperty("client.queue.capacity", "10000");
+        properties.setProperty("metrics.jmx", "false");
+        return new ChatServer(TEST_PORT, new Settings(properties));
+    }
+
+    private static class RecordingClient extends ClientHandler {
+        private final ConcurrentLinkedQueue<String> lines = new ConcurrentLinkedQueue<>();
+
+        RecordingClient(ChatServer server) {
+            super(server);
+        }
+
+        @Override
+        protected void outboundReady() {
+            ByteBuffer frame;
+            while ((frame = pollOutbound()) != null) {
+                lines.add(StandardCharsets.UTF_8.decode(frame.duplicate()).toString());
+            }
+        }
+
+        void await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (lines.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(count, lines.size());
+        }
+
+        @Override
+        protected void closeConnection() {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatTest {
+    private static final int TEST_PORT = 8102;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Колесо таймеров срабатывает по порядку, в том числе через несколько оборотов")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testWheelFiresInOrder() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", 10, 16);
+        wheel.start();
+        try {
+            ConcurrentLinkedQueue<String> fired = new ConcurrentLinkedQueue<>();
+            CountDownLatch done = new CountDownLatch(3);
+            long start = System.nanoTime();
+            long[] firedAfter = new long[1];
+            wheel.schedule(400, () -> {
+                fired.add("c");
+                firedAfter[0] = System.nanoTime() - start;
+                done.countDown();
+            });
+            wheel.schedule(50, () -> {
+                fired.add("a");
+                done.countDown();
+            });
+            wheel.schedule(170, () -> {
+                fired.add("b");
+                done.countDown();
+            });
+            TimingWheel.Timeout cancelled = wheel.schedule(100, () -> fired.add("cancelled"));
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of("a", "b", "c"), new ArrayList<>(fired));
+            assertTrue(firedAfter[0] >= TimeUnit.MILLISECONDS.toNanos(400), "Таймер сработал раньше срока");
+            assertEquals(0, wheel.size());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Отмена таймера снимает его с колеса")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testCancelReleasesTimers() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", 10, 512);
+        wheel.start();
+        try {
+            List<TimingWheel.Timeout> timeouts = new ArrayList<>();
+            for (int i = 0; i < 100_000; i++) {
+                timeouts.add(wheel.schedule(60_000 + i, () -> fail("Отменённый таймер сработал")));
+            }
+            assertEquals(100_000, wheel.size());
+            Thread.sleep(50);
+            for (TimingWheel.Timeout timeout : timeouts) {
+                assertTrue(timeout.cancel());
+            }
+            assertEquals(0, wheel.size());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Молчащий клиент получает PING и отключается по таймауту")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testSilentClientIsReaped() throws Exception {
+        ChatServer server = start("threads");
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT)) {
+            BufferedReader in = reader(socket);
+            assertEquals("PING:SYSTEM:", in.readLine());
+            assertNull(in.readLine(), "Соединение должно быть закрыто сервером");
+            Thread.sleep(100);
+            assertEquals(0, server.getClientCount());
+            assertEquals(0, server.getTimerCount());
+            assertEquals(1, (long) server.getMetricsRegistry().snapshot().get("connections.timed.out"));
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("Клиент, отвечающий PONG, остаётся подключённым (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testRespondingClientStays() throws Exception {
+        ChatServer server = start("nio");
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT)) {
+            BufferedReader in = reader(socket);
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            out.println(new Message(Message.MessageType.JOIN, "Alive", "").serialize());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+            int pings = 0;
+            while (System.nanoTime() < deadline) {
+                String line = in.readLine();
+                assertNotNull(line, "Сервер не должен закрывать живое соединение");
+                if (line.startsWith("PING:")) {
+                    pings++;
+                    out.println(new Message(Message.MessageType.PONG, "Alive", "").serialize());
+                }
+            }
+            assertTrue(pings >= 2, "Сервер должен слать PING, пока клиент молчит: " + pings);
+            assertEquals(1, server.getClientCount());
+
+            out.println(new Message(Message.MessageType.PING, "Alive", "").serialize());
+            String line;
+            while ((line = in.readLine()) != null && !line.startsWith("PONG:")) {
+            }
+            assertEquals("PONG:SYSTEM:", line);
+        } finally {
+            stop(server);
+        }
+    }
+
+    private ChatServer start(String mode) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        properties.setProperty("heartbeat.interval.millis", "200");
+        properties.setProperty("heartbeat.timeout.millis", "300");
+        properties.setProperty("heartbeat.tick.millis", "20");
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(300);
+        return server;
+    }
+
+    private BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private void stop(ChatServer server) {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+}
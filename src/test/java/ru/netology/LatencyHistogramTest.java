@@ -0,0 +1,82 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.LatencyHistogram;
+import ru.netology.common.Settings;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    private static final int TEST_PORT = 8089;
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Перцентили считаются с относительной погрешностью не больше 0.1%")
+    void testPercentilesPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toNanos(1));
+        for (long i = 1; i <= 1_000_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMax());
+        assertWithin(500_000_000L, histogram.getValueAtPercentile(50));
+        assertWithin(990_000_000L, histogram.getValueAtPercentile(99));
+        assertWithin(999_000_000L, histogram.getValueAtPercentile(99.9));
+        assertEquals(1_000_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Значения выше предела учитываются как максимум, гистограммы складываются")
+    void testClampAndAdd() {
+        LatencyHistogram first = new LatencyHistogram(10_000);
+        first.record(5);
+        first.record(1_000_000);
+        LatencyHistogram second = new LatencyHistogram(10_000);
+        second.record(7);
+
+        first.add(second);
+
+        assertEquals(3, first.getCount());
+        assertEquals(10_000, first.getMax());
+        assertEquals(7, first.getValueAtPercentile(50));
+        first.reset();
+        assertEquals(0, first.getCount());
+        assertEquals(0, first.getValueAtPercentile(99));
+    }
+
+    @Test
+    @DisplayName("Генератор нагрузки доставляет все сообщения всем клиентам")
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void testLoadGeneratorDeliversEverything() throws Exception {
+        Properties options = new Properties();
+        options.setProperty("port", String.valueOf(TEST_PORT));
+        options.setProperty("clients", "20");
+        options.setProperty("senders", "2");
+        options.setProperty("rate", "50");
+        options.setProperty("warmup.millis", "200");
+        options.setProperty("duration.millis", "500");
+        try {
+            LoadGenerator.Result result = new LoadGenerator(options).run(Settings.ServerMode.NIO);
+
+            assertTrue(result.getSent() > 0);
+            assertEquals(result.getExpected(), result.getReceived());
+            assertEquals(20, result.getConnectLatency().getCount());
+            assertTrue(result.getDeliveryLatency().getCount() > 0);
+            assertTrue(result.getDeliveryLatency().getValueAtPercentile(99) <= result.getDeliveryLatency().getMax());
+        } finally {
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 1000,
+                "Ожидалось " + expected + " ± 0.1%, получено " + actual);
+    }
+}
@@ -5,11 +5,23 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.netology.common.Logger;
+import ru.netology.common.Settings;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -36,6 +48,17 @@ class LoggerTest {
         }
     }
 
+    @Test
+    @DisplayName("Буфер лога не меньше двух пачек записи")
+    void testLogBufferClamped() {
+        Properties properties = new Properties();
+        properties.setProperty("log.buffer", "0");
+        assertEquals(512, new Settings(properties).getLogBufferSize());
+        properties.setProperty("log.buffer", "-5");
+        properties.setProperty("log.batch.size", "100");
+        assertEquals(200, new Settings(properties).getLogBufferSize());
+    }
+
     @Test
     @DisplayName("Лог-файл создаётся при записи")
     void testLogCreatesFile() {
@@ -97,6 +120,202 @@ class LoggerTest {
         assertEquals(threadCount, lines.length);
     }
 
+    @Test
+    @DisplayName("Асинхронный лог сбрасывает все записи при закрытии")
+    void testAsyncLoggingFlushesOnClose() throws InterruptedException, IOException {
+        Logger asyncLogger = new Logger(asyncSettings("block", 1024));
+        int threadCount = 8;
+        int perThread = 500;
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            final int idx = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    asyncLogger.log("User" + idx, "Msg" + j);
+                }
+            });
+        }
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        asyncLogger.close();
+
+        String[] lines = readLogFile().trim().split("\\n");
+        assertEquals(threadCount * perThread, lines.length);
+        assertEquals(0, asyncLogger.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("Асинхронный лог пишет записи без явного закрытия")
+    void testAsyncLoggingFlushesByTime() throws InterruptedException, IOException {
+        Logger asyncLogger = new Logger(asyncSettings("block", 1024));
+        try {
+            asyncLogger.log("TestUser", "Test message");
+            Thread.sleep(200);
+
+            String content = readLogFile();
+            assertTrue(content.contains("TestUser: Test message"), "Запись должна попасть в файл по таймеру");
+        } finally {
+            asyncLogger.close();
+        }
+    }
+
+    @Test
+    @DisplayName("При переполнении буфера политика count считает пропуски")
+    void testAsyncLoggingCountsDrops() throws IOException {
+        Logger asyncLogger = new Logger(asyncSettings("count", 2));
+        for (int i = 0; i < 10_000; i++) {
+            asyncLogger.log("User", "Msg" + i);
+        }
+        asyncLogger.close();
+
+        assertTrue(asyncLogger.getDroppedCount() > 0, "Часть записей должна быть отброшена");
+        assertTrue(readLogFile().contains("SYSTEM: пропущено записей лога"), "Число пропусков должно попасть в лог");
+    }
+
+    @Test
+    @DisplayName("Ротация по размеру сжимает архивы и хранит не больше заданного числа")
+    void testRotationBySizeCompressesAndPrunes() throws IOException {
+        Path directory = Files.createTempDirectory("logs");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("log.file", directory.resolve("chat.log").toString());
+            properties.setProperty("log.rotate.bytes", "4096");
+            properties.setProperty("log.archive.pattern", "chat-%s.log.gz");
+            properties.setProperty("log.archive.max", "3");
+            properties.setProperty("log.batch.size", "16");
+            Logger rotatingLogger = new Logger(new Settings(properties));
+            for (int i = 0; i < 2000; i++) {
+                rotatingLogger.log("User", "Сообщение номер " + i);
+            }
+            rotatingLogger.close();
+
+            List<Path> archives = list(directory, "chat-.*\\.log\\.gz");
+            assertEquals(3, archives.size(), "Старые архивы должны удаляться");
+            assertEquals(List.of(directory.resolve("chat.log")), list(directory, "chat\\.log.*"),
+                    "Неупакованных копий остаться не должно");
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(archives.get(2))), StandardCharsets.UTF_8))) {
+                assertTrue(reader.readLine().contains("User: Сообщение номер"));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Частая ротация не теряет записей, даже если две попадают в одну миллисекунду")
+    void testFrequentRotationKeepsAllLines() throws IOException {
+        Path directory = Files.createTempDirectory("logs");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("log.file", directory.resolve("chat.log").toString());
+            properties.setProperty("log.rotate.bytes", "64");
+            properties.setProperty("log.archive.pattern", "chat-%s.log.gz");
+            properties.setProperty("log.archive.max", "0");
+            properties.setProperty("log.batch.size", "1");
+            Logger rotatingLogger = new Logger(new Settings(properties));
+            for (int i = 0; i < 300; i++) {
+                rotatingLogger.log("User", "Сообщение номер " + i);
+            }
+            rotatingLogger.close();
+
+            int lines = count(Files.newInputStream(directory.resolve("chat.log")));
+            for (Path archive : list(directory, "chat-.*\\.log\\.gz")) {
+                lines += count(new GZIPInputStream(Files.newInputStream(archive)));
+            }
+            assertEquals(300, lines);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Архивы с суффиксом -N удаляются после архива с тем же временем без суффикса")
+    void testPruneOrdersArchivesByStamp() throws IOException {
+        Path directory = Files.createTempDirectory("logs");
+        try {
+            for (String suffix : new String[]{"", "-1", "-2"}) {
+                Files.createFile(directory.resolve("chat-20200101-000000-000" + suffix + ".log.gz"));
+            }
+            Properties properties = new Properties();
+            properties.setProperty("log.file", directory.resolve("chat.log").toString());
+            properties.setProperty("log.rotate.bytes", "4096");
+            properties.setProperty("log.archive.pattern", "chat-%s.log.gz");
+            properties.setProperty("log.archive.max", "3");
+            Logger rotatingLogger = new Logger(new Settings(properties));
+            for (int i = 0; i < 100; i++) {
+                rotatingLogger.log("User", "Сообщение номер " + i);
+            }
+            rotatingLogger.close();
+
+            List<Path> archives = list(directory, "chat-.*\\.log\\.gz");
+            assertEquals(3, archives.size());
+            assertTrue(archives.contains(directory.resolve("chat-20200101-000000-000-1.log.gz")));
+            assertTrue(archives.contains(directory.resolve("chat-20200101-000000-000-2.log.gz")));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Ротация по времени работает и без асинхронного лога")
+    void testRotationByTimeSync() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("logs");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("log.async", "false");
+            properties.setProperty("log.file", directory.resolve("chat.log").toString());
+            properties.setProperty("log.rotate.millis", "50");
+            properties.setProperty("log.archive.pattern", "chat-%s.log.gz");
+            Logger rotatingLogger = new Logger(new Settings(properties));
+            rotatingLogger.log("User", "до ротации");
+            Thread.sleep(100);
+            rotatingLogger.log("User", "после ротации");
+            rotatingLogger.close();
+
+            assertEquals(1, list(directory, "chat-.*\\.log\\.gz").size());
+            List<String> lines = Files.readAllLines(directory.resolve("chat.log"));
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).endsWith("User: после ротации"));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private int count(InputStream stream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return (int) reader.lines().filter(line -> line.contains("User: Сообщение номер")).count();
+        }
+    }
+
+    private List<Path> list(Path directory, String regex) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches(regex))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Settings asyncSettings(String overflow, int bufferSize) {
+        Properties properties = new Properties();
+        properties.setProperty("log.async", "true");
+        properties.setProperty("log.overflow", overflow);
+        properties.setProperty("log.buffer", String.valueOf(bufferSize));
+        properties.setProperty("log.batch.size", "64");
+        properties.setProperty("log.batch.millis", "5");
+        return new Settings(properties);
+    }
+
     private String readLogFile() throws IOException {
         StringBuilder sb = new StringBuilder();
         try (BufferedReader r = new BufferedReader(new FileReader(LOG_FILE))) {
@@ -0,0 +1,162 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageHistoryTest {
+    private static final int TEST_PORT = 8088;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Кольцо хранит только последние сообщения в порядке отправки")
+    void testReplayKeepsLastMessages() {
+        MessageHistory history = new MessageHistory(3);
+        for (int i = 0; i < 5; i++) {
+            history.append(new FrameCache(new Message(Message.MessageType.MESSAGE, "User", String.valueOf(i))));
+        }
+
+        ByteBuffer backlog = history.replay(history.position(), Message.Format.TEXT);
+        assertEquals("MESSAGE:User:2\nMESSAGE:User:3\nMESSAGE:User:4\n",
+                StandardCharsets.UTF_8.decode(backlog).toString());
+    }
+
+    @Test
+    @DisplayName("Повтор ограничен позицией подключения клиента")
+    void testReplayStopsAtMark() {
+        MessageHistory history = new MessageHistory(3);
+        history.append(new FrameCache(new Message(Message.MessageType.MESSAGE, "User", "before")));
+        long mark = history.position();
+        history.append(new FrameCache(new Message(Message.MessageType.MESSAGE, "User", "after")));
+
+        ByteBuffer backlog = history.replay(mark, Message.Format.TEXT);
+        assertEquals("MESSAGE:User:before\n", StandardCharsets.UTF_8.decode(backlog).toString());
+    }
+
+    @Test
+    @DisplayName("Нулевая ёмкость отключает историю")
+    void testDisabledHistory() {
+        MessageHistory history = new MessageHistory(0);
+        history.append(new FrameCache(new Message(Message.MessageType.MESSAGE, "User", "text")));
+
+        assertFalse(history.isEnabled());
+        assertNull(history.replay(history.position(), Message.Format.TEXT));
+    }
+
+    @Test
+    @DisplayName("Сообщение, уже доставленное вживую, не повторяется из истории")
+    void testLiveMessageNotReplayed() {
+        Properties properties = new Properties();
+        properties.setProperty("history.capacity", "4");
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        try {
+            server.broadcast(new Message(Message.MessageType.MESSAGE, "Alice", "раньше"));
+            QueueOnlyClient bob = new QueueOnlyClient(server);
+            server.addClient(bob);
+            server.broadcast(new Message(Message.MessageType.MESSAGE, "Alice", "гонка"));
+            bob.markHistory(2);
+
+            bob.dispatch(new Message(Message.MessageType.JOIN, "Bob", ""));
+
+            assertEquals("MESSAGE:Alice:гонка\n", text(bob.pollOutbound()));
+            assertEquals("MESSAGE:Alice:раньше\n", text(bob.pollOutbound()));
+            assertEquals("SYSTEM:SYSTEM:Bob присоединился к чату\n", text(bob.pollOutbound()));
+            assertNull(bob.pollOutbound());
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    @Test
+    @DisplayName("Новый участник получает историю до объявления о входе")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testJoinReplaysHistory() throws IOException, InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("history.capacity", "2");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        try (Socket alice = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter aliceOut = new PrintWriter(alice.getOutputStream(), true);
+            BufferedReader aliceIn = new BufferedReader(new InputStreamReader(alice.getInputStream()));
+            aliceOut.println(new Message(Message.MessageType.JOIN, "Alice", "").serialize());
+            for (int i = 1; i <= 3; i++) {
+                aliceOut.println(new Message(Message.MessageType.MESSAGE, "Alice", "сообщение " + i).serialize());
+            }
+            String line;
+            while ((line = aliceIn.readLine()) != null && !line.endsWith("сообщение 3")) {
+            }
+
+            try (Socket bob = new Socket(TEST_HOST, TEST_PORT)) {
+                PrintWriter bobOut = new PrintWriter(bob.getOutputStream(), true);
+                BufferedReader bobIn = new BufferedReader(new InputStreamReader(bob.getInputStream()));
+                bobOut.println(new Message(Message.MessageType.JOIN, "Bob", "").serialize());
+
+                assertEquals("MESSAGE:Alice:сообщение 2", bobIn.readLine());
+                assertEquals("MESSAGE:Alice:сообщение 3", bobIn.readLine());
+                assertEquals("SYSTEM:SYSTEM:Bob присоединился к чату", bobIn.readLine());
+            }
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private static String text(ByteBuffer frame) {
+        return StandardCharsets.UTF_8.decode(frame.duplicate()).toString();
+    }
+
+    @Test
+    @DisplayName("Рассылка во время досылки сессии уходит после пропущенных сообщений")
+    void testDeliveriesHeldDuringResume() {
+        Properties properties = new Properties();
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        try {
+            QueueOnlyClient bob = new QueueOnlyClient(server);
+            server.addClient(bob);
+            bob.holdDeliveries();
+            server.broadcast(new Message(Message.MessageType.MESSAGE, "Alice", "вживую"));
+            assertNull(bob.pollOutbound());
+
+            bob.sendMessage(new Message(Message.MessageType.MESSAGE, "Alice", "пропущено"));
+            bob.releaseDeliveries();
+
+            assertEquals("MESSAGE:Alice:пропущено\n", text(bob.pollOutbound()));
+            assertEquals("MESSAGE:Alice:вживую\n", text(bob.pollOutbound()));
+            assertNull(bob.pollOutbound());
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+    }
+
+    private static class QueueOnlyClient extends ClientHandler {
+        QueueOnlyClient(ChatServer server) {
+            super(server);
+        }
+
+        @Override
+        protected void closeConnection() {
+        }
+    }
+}
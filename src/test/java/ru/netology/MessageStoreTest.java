@@ -0,0 +1,153 @@
+package ru.netology;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.netology.common.Message;
+import ru.netology.common.MessageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageStoreTest {
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("store");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Сообщения читаются по номеру через границы сегментов")
+    void testReadFromSequenceAcrossSegments() throws IOException {
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 0)) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i, store.append(message(i)));
+            }
+            assertTrue(store.getSegmentCount() > 1, "Сегменты должны переключаться по размеру");
+
+            List<MessageStore.Record> records = store.readFrom(150, 10);
+            assertEquals(10, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(150 + i, records.get(i).getSequence());
+                assertEquals("сообщение " + (150 + i), records.get(i).getMessage().getContent());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Сообщения выбираются по интервалу времени")
+    void testReadBetweenTimestamps() throws IOException, InterruptedException {
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 0)) {
+            for (int i = 0; i < 50; i++) {
+                store.append(message(i));
+            }
+            Thread.sleep(20);
+            long from = System.currentTimeMillis();
+            for (int i = 50; i < 100; i++) {
+                store.append(message(i));
+            }
+            long to = System.currentTimeMillis() + 1;
+            Thread.sleep(20);
+            store.append(message(100));
+
+            List<MessageStore.Record> records = store.readBetween(from, to, 1000);
+            assertEquals(50, records.size());
+            assertEquals(50, records.get(0).getSequence());
+            assertEquals(99, records.get(records.size() - 1).getSequence());
+        }
+    }
+
+    @Test
+    @DisplayName("После перезапуска нумерация и индекс восстанавливаются")
+    void testRecoveryAfterReopen() throws IOException {
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 0)) {
+            for (int i = 0; i < 120; i++) {
+                store.append(message(i));
+            }
+        }
+
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 0)) {
+            assertEquals(120, store.getNextSequence());
+            assertEquals(120, store.append(message(120)));
+            assertEquals("сообщение 77", store.readFrom(77, 1).get(0).getMessage().getContent());
+            assertEquals(121, store.readFrom(0, 1000).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Запись индекса у конца сегмента считается обрывом индекса")
+    void testIndexEntryNearSegmentEnd() throws IOException {
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 0)) {
+            for (int i = 0; i < 10; i++) {
+                store.append(message(i));
+            }
+        }
+        ByteBuffer entry = ByteBuffer.allocate(20).putLong(9).putLong(0).putInt(4096 - 2);
+        Files.write(directory.resolve(String.format("%020d.idx", 0)), entry.array(), StandardOpenOption.APPEND);
+
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 0)) {
+            assertEquals(10, store.getNextSequence());
+            assertEquals("сообщение 9", store.readFrom(9, 1).get(0).getMessage().getContent());
+        }
+    }
+
+    @Test
+    @DisplayName("Старые сегменты удаляются целиком")
+    void testRetentionDeletesWholeSegments() throws IOException {
+        try (MessageStore store = new MessageStore(directory, 4096, 256, 3)) {
+            for (int i = 0; i < 500; i++) {
+                store.append(message(i));
+            }
+
+            assertEquals(3, store.getSegmentCount());
+            long first = store.readFrom(0, 1).get(0).getSequence();
+            assertTrue(first > 0);
+            assertEquals(500 - first, store.readFrom(0, 1000).size());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(6, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Старые сегменты читаются после закрытия их файлов, запись в закрытое хранилище отклоняется")
+    void testSealedSegmentsAndClose() throws IOException {
+        MessageStore store = new MessageStore(directory, 4096, 256, 0);
+        for (int i = 0; i < 500; i++) {
+            store.append(message(i));
+        }
+        assertTrue(store.getSegmentCount() > 4);
+        for (int sequence : new int[]{10, 480, 200, 30, 320}) {
+            assertEquals("сообщение " + sequence, store.readFrom(sequence, 1).get(0).getMessage().getContent());
+        }
+        assertEquals(500, store.readFrom(0, 1000).size());
+
+        store.close();
+        assertThrows(IOException.class, () -> store.append(message(500)));
+        assertEquals(500, store.getNextSequence());
+        assertTrue(store.readFrom(0, 10).isEmpty());
+    }
+
+    private Message message(int i) {
+        return new Message(Message.MessageType.MESSAGE, "User", "сообщение " + i);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.netology.common.Message;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTest {
+
+    @Test
+    @DisplayName("Разбор корректных строк протокола")
+    void testDeserializeValidLines() {
+        assertMessage(Message.MessageType.JOIN, "Bob", "", "JOIN:Bob:");
+        assertMessage(Message.MessageType.JOIN, "Bob", "", "JOIN:Bob");
+        assertMessage(Message.MessageType.JOIN, "", "", "JOIN:");
+        assertMessage(Message.MessageType.MESSAGE, "Bob", "Привет: как дела?", "MESSAGE:Bob:Привет: как дела?");
+        assertMessage(Message.MessageType.EXIT, "Bob", " ", "EXIT:Bob: ");
+        assertMessage(Message.MessageType.SYSTEM, "SYSTEM", "текст", "SYSTEM:SYSTEM:текст");
+    }
+
+    @Test
+    @DisplayName("Некорректные строки отклоняются без исключений")
+    void testDeserializeRejectsGarbage() {
+        String[] garbage = {null, "", "   ", "JOIN", "join:Bob:", " JOIN:Bob:", "JOINX:Bob:", "MESSAG:Bob:x", ":Bob:x", "%%%"};
+        for (String line : garbage) {
+            assertNull(Message.deserialize(line), "Строка должна быть отклонена: " + line);
+            if (line != null) {
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                assertNull(Message.parse(bytes, 0, bytes.length), "Байты должны быть отклонены: " + line);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Разбор из байтов совпадает с разбором строки")
+    void testParseBytesMatchesDeserialize() {
+        String line = "MESSAGE:Алиса:привет: мир";
+        byte[] bytes = ("xx" + line + "yy").getBytes(StandardCharsets.UTF_8);
+        int offset = 2;
+        int length = bytes.length - 4;
+
+        Message fromBytes = Message.parse(bytes, offset, length);
+        Message fromString = Message.deserialize(line);
+
+        assertEquals(fromString.getType(), fromBytes.getType());
+        assertEquals(fromString.getUsername(), fromBytes.getUsername());
+        assertEquals(fromString.getContent(), fromBytes.getContent());
+    }
+
+    @Test
+    @DisplayName("serialize и deserialize взаимно обратны")
+    void testRoundTrip() {
+        Message message = new Message(Message.MessageType.MESSAGE, "User", "a:b:c");
+        Message restored = Message.deserialize(message.serialize());
+
+        assertEquals(message.getType(), restored.getType());
+        assertEquals(message.getUsername(), restored.getUsername());
+        assertEquals(message.getContent(), restored.getContent());
+    }
+
+    private void assertMessage(Message.MessageType type, String username, String content, String line) {
+        Message message = Message.deserialize(line);
+        assertNotNull(message, "Строка должна разбираться: " + line);
+        assertEquals(type, message.getType());
+        assertEquals(username, message.getUsername());
+        assertEquals(content, message.getContent());
+
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        Message parsed = Message.parse(bytes, 0, bytes.length);
+        assertNotNull(parsed, "Байты должны разбираться: " + line);
+        assertEquals(type, parsed.getType());
+        assertEquals(username, parsed.getUsername());
+        assertEquals(content, parsed.getContent());
+    }
+}
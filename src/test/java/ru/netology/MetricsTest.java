@@ -0,0 +1,111 @@
+package ru.netology;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    private static final int TEST_PORT = 8090;
+    private static final int ADMIN_PORT = 8091;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private ChatServer server;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("admin.port", String.valueOf(ADMIN_PORT));
+        server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+
+    @Test
+    @DisplayName("Счётчики и гистограммы отдаются через порт статистики")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testAdminPortReportsCounters() throws IOException, InterruptedException {
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out.println(new Message(Message.MessageType.JOIN, "Alice", "").serialize());
+            out.println("мусор без типа");
+            out.println(new Message(Message.MessageType.MESSAGE, "Alice", "привет").serialize());
+            in.readLine();
+            in.readLine();
+            Thread.sleep(100);
+
+            Map<String, Long> stats = parse(readAdmin(null));
+            assertEquals(1, (long) stats.get("connections.opened"));
+            assertEquals(1, (long) stats.get("clients"));
+            assertEquals(2, (long) stats.get("messages.in"));
+            assertEquals(1, (long) stats.get("messages.parse.failures"));
+            assertEquals(2, (long) stats.get("messages.out"));
+            assertTrue(stats.get("bytes.in") > 0);
+            assertTrue(stats.get("bytes.out") > 0);
+            assertEquals(2, (long) stats.get("broadcast.nanos.count"));
+            assertTrue(stats.get("broadcast.nanos.p99") <= stats.get("broadcast.nanos.max"));
+            assertTrue(stats.containsKey("queue.depth.max"));
+            assertTrue(stats.containsKey("log.write.nanos.p50"));
+        }
+    }
+
+    @Test
+    @DisplayName("Порт статистики отвечает на HTTP-запрос, метрики видны в JMX")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testHttpAndJmx() throws Exception {
+        String response = readAdmin("GET /stats HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+        assertTrue(response.contains("\nconnections.opened 0\n"));
+
+        Object clients = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("ru.netology:type=ChatServer,port=" + TEST_PORT), "clients");
+        assertEquals(0L, clients);
+    }
+
+    private String readAdmin(String request) throws IOException {
+        try (Socket socket = new Socket(TEST_HOST, ADMIN_PORT)) {
+            if (request != null) {
+                socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            }
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Map<String, Long> parse(String text) {
+        Map<String, Long> values = new HashMap<>();
+        for (String line : text.split("\n")) {
+            int separator = line.indexOf(' ');
+            if (separator > 0) {
+                values.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.netology;
+
+import org.junit.jupiter.api.*;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioChatServerTest {
+    private static final int TEST_PORT = 8082;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private ChatServer server;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        deleteLogFile();
+        Properties properties = new Properties();
+        properties.setProperty("mode", "nio");
+        properties.setProperty("nio.threads", "2");
+        server = new ChatServer(TEST_PORT, new Settings(properties));
+        Thread serverThread = new Thread(() -> server.start());
+        serverThread.start();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        deleteLogFile();
+    }
+
+    @Test
+    @DisplayName("NIO-сервер обрабатывает JOIN сообщение")
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testNioServerHandlesJoin() throws IOException {
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT);
+             PrintWriter out = writer(socket);
+             BufferedReader in = reader(socket)) {
+
+            out.println(new Message(Message.MessageType.JOIN, "TestUser", "").serialize());
+
+            String response = in.readLine();
+            assertNotNull(response, "Должен получить ответ от сервера");
+            assertTrue(response.contains("TestUser"), "Ответ должен содержать имя пользователя");
+        }
+    }
+
+    @Test
+    @DisplayName("NIO-сервер рассылает сообщения клиентам на разных event loop'ах")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testNioServerBroadcastsMessages() throws IOException {
+        try (Socket socket1 = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter out1 = writer(socket1);
+            BufferedReader in1 = reader(socket1);
+
+            out1.println(new Message(Message.MessageType.JOIN, "User1", "").serialize());
+            in1.readLine();
+
+            try (Socket socket2 = new Socket(TEST_HOST, TEST_PORT)) {
+                PrintWriter out2 = writer(socket2);
+                BufferedReader in2 = reader(socket2);
+
+                out2.println(new Message(Message.MessageType.JOIN, "User2", "").serialize());
+                in1.readLine();
+                in2.readLine();
+
+                out1.println(new Message(Message.MessageType.MESSAGE, "User1", "Привет!").serialize());
+
+                Message received = Message.deserialize(in2.readLine());
+                assertNotNull(received, "User2 должен получить сообщение");
+                assertEquals("User1", received.getUsername());
+                assertEquals("Привет!", received.getContent());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("NIO-сервер собирает строку из нескольких TCP-сегментов")
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testNioServerFramesSplitLines() throws IOException, InterruptedException {
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT);
+             BufferedReader in = reader(socket)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+
+            out.write("JOIN:Spl".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(100);
+            out.write("it\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            String response = in.readLine();
+            assertNotNull(response);
+            assertTrue(response.contains("Split присоединился"), "Строка должна быть собрана целиком");
+        }
+    }
+
+    private PrintWriter writer(Socket socket) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    private BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private void deleteLogFile() {
+        File file = new File(LOG_FILE);
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+}
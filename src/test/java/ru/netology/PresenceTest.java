@@ -0,0 +1,188 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceTest {
+    private static final int TEST_PORT = 8104;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Всплеск входов сворачивается в одно сообщение о присутствии")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testJoinStormCoalesced() throws Exception {
+        ChatServer server = start("300", "5", "false");
+        List<Client> clients = new ArrayList<>();
+        try (Client observer = new Client("Observer")) {
+            observer.awaitLine("Observer присоединился к чату");
+            for (int i = 0; i < 8; i++) {
+                clients.add(new Client("user" + i));
+            }
+            String aggregate = observer.awaitLine("Присоединились к чату");
+            assertTrue(aggregate.contains("(8)"), aggregate);
+            for (int i = 0; i < 8; i++) {
+                assertTrue(aggregate.contains("user" + i), aggregate);
+            }
+
+            clients.get(0).send("маркер");
+            List<String> lines = observer.readUntil("маркер");
+            assertTrue(lines.stream().noneMatch(line -> line.contains("присоединился")), lines.toString());
+            assertEquals(8, (long) server.getMetricsRegistry().snapshot().get("presence.coalesced"));
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("Обычные сообщения не ждут окна присутствия")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testMessagesNotDelayed() throws Exception {
+        ChatServer server = start("1500", "1", "false");
+        try (Client observer = new Client("Observer")) {
+            observer.awaitLine("Присоединились к чату");
+            try (Client sender = new Client("Sender")) {
+                sender.send("срочно");
+                long start = System.nanoTime();
+                List<String> lines = observer.readUntil("срочно");
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue(elapsedMillis < 1000, "Сообщение задержано на " + elapsedMillis + " мс");
+                assertTrue(lines.stream().noneMatch(line -> line.contains("Sender")), lines.toString());
+                assertTrue(observer.awaitLine("Присоединились к чату").contains("Sender"));
+            }
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("Выход и повторный вход в одном окне не порождают событий")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testReconnectCancelsOut() throws Exception {
+        ChatServer server = start("500", "1", "false");
+        try (Client observer = new Client("Observer"); Client flaky = new Client("Flaky")) {
+            observer.awaitLine("Flaky");
+            flaky.awaitLine("Flaky");
+
+            flaky.exit();
+            Thread.sleep(100);
+            try (Client again = new Client("Flaky")) {
+                Thread.sleep(1000);
+                again.send("снова здесь");
+                List<String> lines = observer.readUntil("снова здесь");
+                assertTrue(lines.stream().noneMatch(line -> line.contains("Flaky") && line.startsWith("SYSTEM")),
+                        lines.toString());
+            }
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("Новичок получает список участников чата")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testRosterSnapshot() throws Exception {
+        ChatServer server = start("0", "1", "true");
+        try (Client first = new Client("Alice")) {
+            first.awaitLine("В чате (1): Alice");
+            try (Client second = new Client("Bob")) {
+                String roster = second.awaitLine("В чате");
+                assertTrue(roster.contains("(2)"), roster);
+                assertTrue(roster.contains("Alice") && roster.contains("Bob"), roster);
+                assertTrue(first.awaitLine("Bob присоединился к чату").startsWith("SYSTEM"));
+            }
+        } finally {
+            stop(server);
+        }
+    }
+
+    private ChatServer start(String window, String threshold, String roster) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("presence.window.millis", window);
+        properties.setProperty("presence.threshold", threshold);
+        properties.setProperty("presence.roster", roster);
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+        return server;
+    }
+
+    private void stop(ChatServer server) {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+
+    private static class Client implements AutoCloseable {
+        private final String username;
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+
+        Client(String username) throws IOException {
+            this.username = username;
+            socket = new Socket(TEST_HOST, TEST_PORT);
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(new Message(Message.MessageType.JOIN, username, "").serialize());
+        }
+
+        void send(String text) {
+            out.println(new Message(Message.MessageType.MESSAGE, username, text).serialize());
+        }
+
+        void exit() {
+            out.println(new Message(Message.MessageType.EXIT, username, "").serialize());
+        }
+
+        String awaitLine(String text) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(text)) {
+                    return line;
+                }
+            }
+            fail("Соединение закрыто до получения " + text);
+            return null;
+        }
+
+        List<String> readUntil(String text) throws IOException {
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(text)) {
+                    return lines;
+                }
+                lines.add(line);
+            }
+            fail("Соединение закрыто до получения " + text);
+            return lines;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitTest {
+    private static final int TEST_PORT = 8101;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Корзина токенов пропускает всплеск и затем ограничивает скорость")
+    void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(1, now));
+        }
+        assertFalse(bucket.tryAcquire(1, now));
+        assertTrue(bucket.tryAcquire(1, now + TimeUnit.MILLISECONDS.toNanos(100)));
+
+        long delay = bucket.acquire(3, now + TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), delay);
+    }
+
+    @Test
+    @DisplayName("При действии drop лишние сообщения не рассылаются (threads)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testDropThreads() throws Exception {
+        ChatServer server = start("threads", "drop", "5", "5");
+        try (Client sender = new Client("Flood"); Client reader = new Client("Reader")) {
+            reader.awaitLine("Reader присоединился");
+            for (int i = 0; i < 50; i++) {
+                sender.send("flood " + i);
+            }
+            sender.send("Reader:конец");
+            List<String> received = reader.readMessages(500);
+            assertTrue(received.size() <= 6, "Разослано слишком много сообщений: " + received.size());
+            assertTrue(server.getMetricsRegistry().snapshot().get("messages.rate.limited") >= 40);
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("При действии disconnect нарушитель отключается (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testDisconnectNio() throws Exception {
+        ChatServer server = start("nio", "disconnect", "5", "5");
+        try (Client sender = new Client("Flood")) {
+            for (int i = 0; i < 50; i++) {
+                sender.send("flood " + i);
+            }
+            sender.socket.setSoTimeout(5000);
+            String line;
+            while ((line = sender.in.readLine()) != null) {
+                assertFalse(line.contains("flood 49"), "Сообщения после превышения лимита не рассылаются");
+            }
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("При действии throttle чтение приостанавливается, но все сообщения доходят (nio)")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testThrottleNio() throws Exception {
+        ChatServer server = start("nio", "throttle", "50", "10");
+        try (Client sender = new Client("Fast"); Client reader = new Client("Reader")) {
+            reader.awaitLine("Reader присоединился");
+            long start = System.nanoTime();
+            for (int i = 0; i < 40; i++) {
+                sender.send("msg " + i);
+            }
+            for (int i = 0; i < 40; i++) {
+                reader.awaitLine("msg " + i);
+            }
+            sender.send("last");
+            reader.awaitLine("last");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 400, "Сообщения пришли слишком быстро: " + elapsedMillis + " мс");
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    @DisplayName("Лимит приёма соединений закрывает лишние подключения")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testAcceptAdmission() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("accept.rate", "1");
+        properties.setProperty("accept.burst", "2");
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            int closed = 0;
+            for (int i = 0; i < 5; i++) {
+                sockets.add(new Socket(TEST_HOST, TEST_PORT));
+            }
+            for (Socket socket : sockets) {
+                socket.setSoTimeout(300);
+                try {
+                    if (socket.getInputStream().read() < 0) {
+                        closed++;
+                    }
+                } catch (SocketTimeoutException ignored) {
+                }
+            }
+            assertEquals(3, closed);
+            assertEquals(3, (long) server.getMetricsRegistry().snapshot().get("connections.rejected"));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            stop(server);
+        }
+    }
+
+    private ChatServer start(String mode, String action, String rate, String burst) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        properties.setProperty("client.rate.action", action);
+        properties.setProperty("client.rate.messages", rate);
+        properties.setProperty("client.rate.messages.burst", burst);
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+        return server;
+    }
+
+    private void stop(ChatServer server) {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+
+    private static class Client implements AutoCloseable {
+        private final String username;
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+
+        Client(String username) throws IOException {
+            this.username = username;
+            socket = new Socket(TEST_HOST, TEST_PORT);
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(new Message(Message.MessageType.JOIN, username, "").serialize());
+        }
+
+        void send(String text) {
+            out.println(new Message(Message.MessageType.MESSAGE, username, text).serialize());
+        }
+
+        void awaitLine(String text) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(text)) {
+                    return;
+                }
+            }
+            fail("Соединение закрыто до получения " + text);
+        }
+
+        List<String> readMessages(int quietMillis) throws IOException {
+            List<String> messages = new ArrayList<>();
+            socket.setSoTimeout(quietMillis);
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("MESSAGE:")) {
+                        messages.add(line);
+                    }
+                }
+            } catch (SocketTimeoutException ignored) {
+            }
+            return messages;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
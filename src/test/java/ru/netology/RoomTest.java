@@ -0,0 +1,127 @@
+package ru.netology;
+
+import org.junit.jupiter.api.*;
+import ru.netology.common.Message;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomTest {
+    private static final int TEST_PORT = 8086;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private ChatServer server;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        server = new ChatServer(TEST_PORT);
+        new Thread(() -> server.start()).start();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+
+    @Test
+    @DisplayName("Сообщение в комнату получают только её участники")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testRoomMessageReachesOnlyMembers() throws IOException {
+        try (Client alice = new Client("Alice");
+             Client bob = new Client("Bob");
+             Client carol = new Client("Carol")) {
+            alice.send(Message.MessageType.ROOM_JOIN, "dev");
+            alice.readUntil("dev:Alice вошёл в комнату");
+            bob.send(Message.MessageType.ROOM_JOIN, "dev");
+            bob.readUntil("dev:Bob вошёл в комнату");
+
+            alice.send(Message.MessageType.ROOM_MESSAGE, "dev:релиз в 19:00");
+            assertEquals("ROOM_MESSAGE:Alice:dev:релиз в 19:00", bob.readUntil("релиз"));
+
+            alice.send(Message.MessageType.MESSAGE, "marker");
+            String line;
+            while (!(line = carol.in.readLine()).contains("marker")) {
+                assertFalse(line.contains("релиз"), "Carol не состоит в комнате");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("После выхода из комнаты сообщения больше не приходят")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testLeaveRoom() throws IOException {
+        try (Client alice = new Client("Alice");
+             Client bob = new Client("Bob")) {
+            alice.send(Message.MessageType.ROOM_JOIN, "dev");
+            alice.readUntil("dev:Alice вошёл в комнату");
+            bob.send(Message.MessageType.ROOM_JOIN, "dev");
+            alice.readUntil("dev:Bob вошёл в комнату");
+
+            bob.send(Message.MessageType.ROOM_LEAVE, "dev");
+            alice.readUntil("dev:Bob покинул комнату");
+
+            bob.send(Message.MessageType.ROOM_MESSAGE, "dev:ещё тут?");
+            assertEquals("SYSTEM:SYSTEM:Вы не состоите в комнате: dev", bob.readUntil("Вы не состоите"));
+        }
+    }
+
+    @Test
+    @DisplayName("Пустая комната удаляется из реестра")
+    void testEmptyRoomIsRemoved() {
+        RoomRegistry registry = new RoomRegistry();
+        ClientHandler client = new ClientHandler(server) {
+            @Override
+            protected void closeConnection() {
+            }
+        };
+
+        assertTrue(registry.join("dev", client));
+        assertFalse(registry.join("dev", client), "Повторный вход не должен дублировать участника");
+        assertEquals(1, registry.size());
+        assertTrue(registry.leave("dev", client));
+        assertEquals(0, registry.size());
+        assertTrue(registry.members("dev").isEmpty());
+    }
+
+    private static class Client implements Closeable {
+        final Socket socket;
+        final PrintWriter out;
+        final BufferedReader in;
+        final String name;
+
+        Client(String name) throws IOException {
+            this.name = name;
+            this.socket = new Socket(TEST_HOST, TEST_PORT);
+            this.out = new PrintWriter(socket.getOutputStream(), true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            send(Message.MessageType.JOIN, "");
+            readUntil(name + " присоединился");
+        }
+
+        void send(Message.MessageType type, String content) {
+            out.println(new Message(type, name, content).serialize());
+        }
+
+        String readUntil(String fragment) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(fragment)) {
+                    return line;
+                }
+            }
+            fail("Соединение закрыто до получения: " + fragment);
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ru.netology;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.MessageStore;
+import ru.netology.common.SearchIndex;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTest {
+    private static final int TEST_PORT = 8106;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("search");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Поиск находит сообщения со всеми словами, новые первыми")
+    void testConjunctiveQuery() {
+        SearchIndex index = new SearchIndex();
+        index.add(0, message("Алиса", "Встречаемся у входа в 19:00"));
+        index.add(1, message("Боб", "Кто идёт ко входу?"));
+        index.add(2, message("Боб", "Встречаемся завтра у ВХОДА"));
+        index.add(3, new Message(Message.MessageType.SYSTEM, "SYSTEM", "Встречаемся у входа"));
+
+        assertArrayEquals(new long[]{2, 0}, index.search("встречаемся входа", 10));
+        assertArrayEquals(new long[]{2}, index.search("встречаемся входа", 1));
+        assertArrayEquals(new long[]{2, 1}, index.search("@боб", 10));
+        assertArrayEquals(new long[]{2}, index.search("@Боб завтра", 10));
+        assertArrayEquals(new long[0], index.search("встречаемся отчёт", 10));
+        assertArrayEquals(new long[0], index.search("  ", 10));
+        assertEquals(3, index.getMessageCount());
+    }
+
+    @Test
+    @DisplayName("Индекс сохраняется рядом с хранилищем и догоняет его при запуске")
+    void testPersistAndCatchUp() throws IOException {
+        try (MessageStore store = new MessageStore(directory, 64 * 1024, 4096, 0)) {
+            SearchIndex index = SearchIndex.open(directory, store);
+            for (int i = 0; i < 100; i++) {
+                Message message = message("user" + (i % 3), "сообщение номер " + i + (i % 10 == 0 ? " юбилей" : ""));
+                index.add(store.append(message), message);
+            }
+            index.close();
+            store.append(message("user0", "юбилей после сохранения"));
+            store.append(new Message(Message.MessageType.DIRECT, "user1", "user0:юбилей лично"));
+        }
+        assertTrue(Files.exists(directory.resolve(SearchIndex.FILE_NAME)));
+
+        try (MessageStore store = new MessageStore(directory, 64 * 1024, 4096, 0)) {
+            SearchIndex index = SearchIndex.open(directory, store);
+            long[] hits = index.search("юбилей", 100);
+            assertEquals(11, hits.length);
+            assertEquals(100, hits[0]);
+            assertEquals("юбилей после сохранения", store.readFrom(hits[0], 1).get(0).getMessage().getContent());
+            assertEquals(101, index.getMessageCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Повреждённый индекс перестраивается из хранилища")
+    void testCorruptIndexRebuilt() throws IOException {
+        try (MessageStore store = new MessageStore(directory, 64 * 1024, 4096, 0)) {
+            store.append(message("Алиса", "привет всем"));
+            Files.write(directory.resolve(SearchIndex.FILE_NAME), new byte[]{1, 2, 3});
+            SearchIndex index = SearchIndex.open(directory, store);
+            assertArrayEquals(new long[]{0}, index.search("привет", 10));
+        }
+    }
+
+    @Test
+    @DisplayName("Индекс с недопустимыми длинами и порядком номеров перестраивается")
+    void testInvalidPostingsRebuilt() throws IOException {
+        int[][] cases = {{1, -5, 0}, {1, Integer.MAX_VALUE, 0}, {-1, 0, 0}, {1, 2, 1}};
+        try (MessageStore store = new MessageStore(directory, 64 * 1024, 4096, 0)) {
+            store.append(message("Алиса", "привет всем"));
+            for (int[] values : cases) {
+                try (DataOutputStream out = new DataOutputStream(
+                        Files.newOutputStream(directory.resolve(SearchIndex.FILE_NAME)))) {
+                    out.writeInt(0x4E435358);
+                    out.writeInt(1);
+                    out.writeLong(1);
+                    out.writeLong(1);
+                    out.writeInt(values[0]);
+                    out.writeUTF("привет");
+                    out.writeInt(values[1]);
+                    out.writeByte(values[2]);
+                    out.writeByte(0);
+                }
+                SearchIndex index = SearchIndex.open(directory, store);
+                assertArrayEquals(new long[]{0}, index.search("привет", 10));
+                index.add(1, message("Боб", "привет снова"));
+                assertArrayEquals(new long[]{1, 0}, index.search("привет", 10));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Запрос SEARCH возвращает найденные сообщения общего чата")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testSearchRequest() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("store.dir", directory.toString());
+        properties.setProperty("search.enabled", "true");
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter out = new PrintWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(new Message(Message.MessageType.JOIN, "Алиса", "").serialize());
+            out.println(new Message(Message.MessageType.MESSAGE, "Алиса", "отчёт готов").serialize());
+            out.println(new Message(Message.MessageType.MESSAGE, "Алиса", "обед в час").serialize());
+            out.println(new Message(Message.MessageType.DIRECT, "Алиса", "Алиса:отчёт лично").serialize());
+            out.println(new Message(Message.MessageType.SEARCH, "Алиса", "Отчёт").serialize());
+
+            List<String> results = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.startsWith("SEARCH:SYSTEM:")) {
+                if (line.startsWith("SEARCH:")) {
+                    results.add(line);
+                }
+            }
+            assertEquals("SEARCH:SYSTEM:Найдено: 1", line);
+            assertEquals(List.of("SEARCH:Алиса:отчёт готов"), results);
+            assertEquals(1L, (long) server.getMetricsRegistry().snapshot().get("search.queries"));
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+        }
+        assertTrue(Files.exists(directory.resolve(SearchIndex.FILE_NAME)));
+    }
+
+    private static Message message(String username, String content) {
+        return new Message(Message.MessageType.MESSAGE, username, content);
+    }
+}
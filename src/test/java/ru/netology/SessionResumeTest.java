@@ -0,0 +1,193 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionResumeTest {
+    private static final int TEST_PORT = 8105;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+
+    @Test
+    @DisplayName("Возобновлённая сессия получает только пропущенные сообщения")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testResumeFromWindow() throws Exception {
+        assertGapReplayed(new Properties(), 3);
+    }
+
+    @Test
+    @DisplayName("Возобновление через потоки рассылки сохраняет порядок")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testResumeWithFanout() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("broadcast.threads", "2");
+        assertGapReplayed(properties, 3);
+    }
+
+    @Test
+    @DisplayName("Сообщения старше окна досылаются из хранилища")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testResumeFromStore() throws Exception {
+        Path directory = Files.createTempDirectory("session-store");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("store.dir", directory.toString());
+            properties.setProperty("session.window", "2");
+            assertGapReplayed(properties, 6);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Неизвестный токен начинает новую сессию")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void testUnknownToken() throws Exception {
+        ChatServer server = start(new Properties());
+        try (Client alice = new Client()) {
+            alice.send(Message.MessageType.RESUME, "Alice", "нет-такого:5");
+            assertTrue(alice.awaitLine("Сессия не найдена").startsWith("SYSTEM"));
+            String[] session = alice.awaitSession();
+            assertNotEquals("нет-такого", session[0]);
+            assertEquals(1, server.getSessionCount());
+        } finally {
+            stop(server);
+        }
+    }
+
+    private void assertGapReplayed(Properties properties, int missed) throws Exception {
+        ChatServer server = start(properties);
+        try (Client bob = new Client()) {
+            bob.send(Message.MessageType.JOIN, "Bob", "");
+            bob.awaitLine("Bob присоединился");
+
+            String token;
+            long lastSeen;
+            try (Client alice = new Client()) {
+                alice.send(Message.MessageType.RESUME, "Alice", "");
+                token = alice.awaitSession()[0];
+                bob.send(Message.MessageType.MESSAGE, "Bob", "до обрыва");
+                lastSeen = alice.awaitSequence();
+                assertEquals("MESSAGE:Bob:до обрыва", alice.readLine());
+            }
+            while (server.getClientCount() > 1) {
+                Thread.sleep(10);
+            }
+
+            for (int i = 0; i < missed; i++) {
+                bob.send(Message.MessageType.MESSAGE, "Bob", "пропущено " + i);
+            }
+            bob.awaitLine("пропущено " + (missed - 1));
+
+            try (Client alice = new Client()) {
+                alice.send(Message.MessageType.RESUME, "Alice", token + ":" + lastSeen);
+                assertEquals(token, alice.awaitSession()[0]);
+                long previous = lastSeen;
+                for (int i = 0; i < missed; i++) {
+                    long sequence = alice.awaitSequence();
+                    assertTrue(sequence > previous, sequence + " <= " + previous);
+                    previous = sequence;
+                    assertEquals("MESSAGE:Bob:пропущено " + i, alice.readLine());
+                }
+
+                bob.send(Message.MessageType.MESSAGE, "Bob", "после возврата");
+                assertTrue(alice.awaitSequence() > previous);
+                assertEquals("MESSAGE:Bob:после возврата", alice.readLine());
+            }
+            assertEquals(1L, (long) server.getMetricsRegistry().snapshot().get("sessions.resumed"));
+        } finally {
+            stop(server);
+        }
+    }
+
+    private ChatServer start(Properties properties) throws InterruptedException {
+        properties.setProperty("session.resume", "true");
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+        return server;
+    }
+
+    private void stop(ChatServer server) {
+        server.stop();
+        new File(LOG_FILE).delete();
+    }
+
+    private static class Client implements AutoCloseable {
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+
+        Client() throws IOException {
+            socket = new Socket(TEST_HOST, TEST_PORT);
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        void send(Message.MessageType type, String username, String content) {
+            out.println(new Message(type, username, content).serialize());
+        }
+
+        String readLine() throws IOException {
+            String line = in.readLine();
+            assertNotNull(line, "Соединение закрыто");
+            return line;
+        }
+
+        String awaitLine(String text) throws IOException {
+            String line;
+            while (!(line = readLine()).contains(text)) {
+                assertFalse(line.startsWith("SEQ:"), "Неожиданный номер перед " + text + ": " + line);
+            }
+            return line;
+        }
+
+        String[] awaitSession() throws IOException {
+            String line;
+            while (!(line = readLine()).startsWith("SESSION:SYSTEM:")) {
+                assertFalse(line.startsWith("SEQ:"), "Номер пришёл до SESSION: " + line);
+            }
+            return line.substring("SESSION:SYSTEM:".length()).split(":");
+        }
+
+        long awaitSequence() throws IOException {
+            String line;
+            while (!(line = readLine()).startsWith("SEQ:SYSTEM:")) {
+                assertFalse(line.startsWith("MESSAGE:"), "Сообщение без номера: " + line);
+            }
+            return Long.parseLong(line.substring("SEQ:SYSTEM:".length()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedAcceptTest {
+    private static final int TEST_PORT = 8103;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+    private static final int ACCEPTORS = 4;
+    private static final int CLIENTS = 12;
+
+    @Test
+    @DisplayName("Несколько приёмников на SO_REUSEPORT: рассылка доходит до всех клиентов (threads)")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testReusePortThreads() throws Exception {
+        assertBroadcastReachesAll("threads", true);
+    }
+
+    @Test
+    @DisplayName("Несколько приёмников на SO_REUSEPORT: рассылка доходит до всех клиентов (nio)")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testReusePortNio() throws Exception {
+        assertBroadcastReachesAll("nio", true);
+    }
+
+    @Test
+    @DisplayName("Без SO_REUSEPORT приёмники делят один сокет")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testSharedSocket() throws Exception {
+        assertBroadcastReachesAll("nio", false);
+    }
+
+    private void assertBroadcastReachesAll(String mode, boolean reusePort) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode);
+        properties.setProperty("nio.threads", "2");
+        properties.setProperty("accept.threads", String.valueOf(ACCEPTORS));
+        properties.setProperty("accept.reuseport", String.valueOf(reusePort));
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        Thread serverThread = new Thread(server::start);
+        serverThread.start();
+        Thread.sleep(500);
+
+        List<Client> clients = new ArrayList<>();
+        try {
+            assertEquals(ACCEPTORS - 1, acceptorThreads());
+            for (int i = 0; i < CLIENTS; i++) {
+                Client client = new Client("user" + i);
+                clients.add(client);
+                client.awaitLine("user" + i + " присоединился");
+            }
+            assertEquals(CLIENTS, server.getClientCount());
+
+            clients.get(0).send("всем привет");
+            for (Client client : clients) {
+                client.awaitLine("всем привет");
+            }
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            server.stop();
+            serverThread.join(TimeUnit.SECONDS.toMillis(5));
+            new File(LOG_FILE).delete();
+        }
+
+        while (acceptorThreads() > 0) {
+            Thread.sleep(10);
+        }
+
+        try (ServerSocket rebound = new ServerSocket(TEST_PORT)) {
+            assertTrue(rebound.isBound());
+        }
+    }
+
+    private static long acceptorThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("acceptor-"))
+                .count();
+    }
+
+    private static class Client implements AutoCloseable {
+        private final String username;
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+
+        Client(String username) throws IOException {
+            this.username = username;
+            socket = new Socket(TEST_HOST, TEST_PORT);
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(new Message(Message.MessageType.JOIN, username, "").serialize());
+        }
+
+        void send(String text) {
+            out.println(new Message(Message.MessageType.MESSAGE, username, text).serialize());
+        }
+
+        void awaitLine(String text) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(text)) {
+                    return;
+                }
+            }
+            fail("Соединение закрыто до получения " + text);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.netology;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import ru.netology.common.Message;
+import ru.netology.common.Settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteCoalescingTest {
+    private static final int TEST_PORT = 8092;
+    private static final String TEST_HOST = "localhost";
+    private static final String LOG_FILE = "file.log";
+    private static final int BURST = 500;
+
+    @Test
+    @DisplayName("Пачка сообщений уходит клиенту малым числом записей (threads)")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testBurstIsCoalescedThreads() throws Exception {
+        assertBurstCoalesced(Settings.ServerMode.THREADS);
+    }
+
+    @Test
+    @DisplayName("Пачка сообщений уходит клиенту малым числом записей (nio)")
+    @Timeout(value = 15, unit = TimeUnit.SECONDS)
+    void testBurstIsCoalescedNio() throws Exception {
+        assertBurstCoalesced(Settings.ServerMode.NIO);
+    }
+
+    private void assertBurstCoalesced(Settings.ServerMode mode) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("mode", mode.name());
+        properties.setProperty("client.write.delay.micros", "20000");
+        properties.setProperty("metrics.jmx", "false");
+        ChatServer server = new ChatServer(TEST_PORT, new Settings(properties));
+        new Thread(server::start).start();
+        Thread.sleep(500);
+
+        try (Socket socket = new Socket(TEST_HOST, TEST_PORT)) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out.println(new Message(Message.MessageType.JOIN, "Alice", "").serialize());
+            assertEquals("SYSTEM:SYSTEM:Alice присоединился к чату", in.readLine());
+
+            long writesBefore = counter(server, "write.calls");
+            for (int i = 0; i < BURST; i++) {
+                server.broadcast(new Message(Message.MessageType.MESSAGE, "Bob", "сообщение " + i));
+            }
+            for (int i = 0; i < BURST; i++) {
+                assertEquals("MESSAGE:Bob:сообщение " + i, in.readLine());
+            }
+
+            long writes = counter(server, "write.calls") - writesBefore;
+            assertTrue(writes <= BURST / 10, "Ожидалось не больше " + BURST / 10 + " записей, было " + writes);
+
+            long start = System.nanoTime();
+            server.broadcast(new Message(Message.MessageType.MESSAGE, "Bob", "одиночное"));
+            assertEquals("MESSAGE:Bob:одиночное", in.readLine());
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500),
+                    "Одиночное сообщение не должно ждать дольше предела задержки");
+        } finally {
+            server.stop();
+            new File(LOG_FILE).delete();
+            Thread.sleep(300);
+        }
+    }
+
+    private long counter(ChatServer server, String name) {
+        Map<String, Long> values = server.getMetricsRegistry().snapshot();
+        return values.get(name);
+    }
+}